@@ -0,0 +1,155 @@
+//  CorpusGenerator.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  CorpusGenerator
+//  Generates a synthetic Java corpus for the benchmarks.
+//
+//    depth: nesting depth of the blocks in each method.
+//    density: number of identifiers used in each expression.
+//
+//  usage:
+//    java getIdents.CorpusGenerator [-n files] [-d depth] [-k density]
+//         [-s seed] outdir
+//
+public class CorpusGenerator {
+
+    private static final String[] TYPES = {
+        "int", "long", "String", "Object", "List<String>",
+    };
+
+    private Random _rnd;
+    private int _nfiles;
+    private int _depth;
+    private int _density;
+
+    public CorpusGenerator(long seed, int nfiles, int depth, int density) {
+        _rnd = new Random(seed);
+        _nfiles = nfiles;
+        _depth = depth;
+        _density = density;
+    }
+
+    // generate: returns the source of the i-th file.
+    public String generate(int index) {
+        StringBuilder b = new StringBuilder();
+        String name = "C"+index;
+        String other = "C"+((index+1) % _nfiles);
+        b.append("package gen.p"+(index % 10)+";\n\n");
+        b.append("import java.util.*;\n\n");
+        b.append("public class "+name+" extends Base"+(index % 3)+" {\n\n");
+        List<String> fields = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            String f = "field"+i;
+            b.append("    "+TYPES[i % TYPES.length]+" "+f+";\n");
+            fields.add(f);
+        }
+        b.append("    "+other+" peer;\n\n");
+        for (int m = 0; m < 4; m++) {
+            b.append("    String method"+m+"(String arg0, int arg1) {\n");
+            List<String> vars = new ArrayList<String>(fields);
+            vars.add("arg0");
+            vars.add("arg1");
+            genBlock(b, 2, _depth, vars);
+            b.append("        return peer.method"+m+"(arg0, arg1);\n");
+            b.append("    }\n\n");
+        }
+        b.append("    enum Kind { ALPHA, BETA, GAMMA }\n");
+        b.append("}\n");
+        return b.toString();
+    }
+
+    private void genBlock(StringBuilder b, int indent, int depth,
+                          List<String> vars) {
+        String sp = spaces(indent);
+        List<String> scope = new ArrayList<String>(vars);
+        for (int i = 0; i < 3; i++) {
+            String v = "local"+depth+"x"+i;
+            b.append(sp+"String "+v+" = "+genExpr(scope)+";\n");
+            scope.add(v);
+        }
+        b.append(sp+pick(scope)+" = "+genExpr(scope)+";\n");
+        b.append(sp+"System.out.println("+genExpr(scope)+");\n");
+        b.append(sp+"peer.method"+_rnd.nextInt(4)+"("+
+                 pick(scope)+".toString(), "+pick(scope)+".hashCode());\n");
+        if (0 < depth) {
+            b.append(sp+"if ("+pick(scope)+" != null) {\n");
+            genBlock(b, indent+1, depth-1, scope);
+            b.append(sp+"}\n");
+            b.append(sp+"for (int i"+depth+" = 0; i"+depth+" < arg1; i"+
+                     depth+"++) {\n");
+            genBlock(b, indent+1, depth-1, scope);
+            b.append(sp+"}\n");
+        }
+    }
+
+    private String genExpr(List<String> vars) {
+        StringBuilder b = new StringBuilder();
+        b.append("\"\"");
+        for (int i = 0; i < _density; i++) {
+            b.append("+"+pick(vars));
+        }
+        return b.toString();
+    }
+
+    private String pick(List<String> vars) {
+        return vars.get(_rnd.nextInt(vars.size()));
+    }
+
+    private static String spaces(int indent) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < indent; i++) {
+            b.append("    ");
+        }
+        return b.toString();
+    }
+
+    // writeFiles: writes the corpus and returns the paths.
+    public List<String> writeFiles(File dir)
+        throws IOException {
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < _nfiles; i++) {
+            File file = new File(dir, "gen/p"+(i % 10)+"/C"+i+".java");
+            file.getParentFile().mkdirs();
+            try (Writer out = new OutputStreamWriter(
+                     new FileOutputStream(file), "UTF-8")) {
+                out.write(generate(i));
+            }
+            paths.add(file.getPath());
+        }
+        return paths;
+    }
+
+    public static void main(String[] args)
+        throws IOException {
+        int nfiles = 100;
+        int depth = 3;
+        int density = 4;
+        long seed = 0;
+        File dir = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-n")) {
+                nfiles = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-d")) {
+                depth = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-k")) {
+                density = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-s")) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                dir = new File(arg);
+            }
+        }
+        if (dir == null) {
+            System.err.println("usage: CorpusGenerator [-n files] [-d depth] [-k density] [-s seed] outdir");
+            System.exit(100);
+        }
+        CorpusGenerator gen = new CorpusGenerator(seed, nfiles, depth, density);
+        for (String path : gen.writeFiles(dir)) {
+            System.out.println(path);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+//  ExtractorBench.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.eclipse.jdt.core.dom.*;
+import org.openjdk.jmh.annotations.*;
+
+//  ExtractorBench
+//  Measures each stage of the extraction for a single generated file.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractorBench {
+
+    @Param({"1", "3", "5"})
+    public int depth;
+
+    @Param({"4"})
+    public int density;
+
+    private byte[] _data;
+    private CompilationUnit _cunit;
+    private FeatureSet _fset;
+
+    @Setup
+    public void setup() throws IOException {
+        CorpusGenerator gen = new CorpusGenerator(0, 1, depth, density);
+        _data = gen.generate(0).getBytes("UTF-8");
+        _cunit = DefUseExtractor.parseFile("C0.java", _data);
+        _fset = new FeatureSet(new SymbolTable());
+        _cunit.accept(new FeatExtractor(_fset));
+    }
+
+    @Benchmark
+    public Object parserSetup() {
+        return DefUseExtractor.newParser();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return DefUseExtractor.parseFile("C0.java", _data);
+    }
+
+    @Benchmark
+    public Object featExtractor() {
+        FeatureSet fset = new FeatureSet(_fset.getSymbols());
+        _cunit.accept(new FeatExtractor(fset));
+        return fset;
+    }
+
+    @Benchmark
+    public int defUseExtractor() {
+        final int[] count = new int[1];
+        DefUseExtractor extractor = new DefUseExtractor(
+            _fset, new DefUseSink() {
+                @Override
+                public void startFile(String path) { }
+                @Override
+                public void add(DefUse[] defuses) {
+                    count[0] += defuses.length;
+                }
+                @Override
+                public void endFile(String path) { }
+            });
+        extractor.extract("C0.java", _cunit);
+        return count[0];
+    }
+}
@@ -0,0 +1,97 @@
+//  FeatureSetBench.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+//  FeatureSetBench
+//  Measures the Namespace and FeatureSet operations used for resolving.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureSetBench {
+
+    @Param({"4", "16"})
+    public int depth;
+
+    @Param({"100000"})
+    public int nkeys;
+
+    private SymbolTable _symbols;
+    private Namespace _space;
+    private FeatureSet _fset;
+    private long[] _hits;
+    private long[] _misses;
+    private int _index = 0;
+
+    @Setup
+    public void setup() {
+        _symbols = new SymbolTable();
+        _space = new Namespace(null, "pkg");
+        for (int i = 0; i < depth; i++) {
+            _space = new Namespace(_space, "B"+i);
+        }
+        // Intern the ids of all the namespaces.
+        new NamespaceWalker(_symbols).getId(_space);
+        _fset = new FeatureSet(_symbols);
+        Random rnd = new Random(0);
+        _hits = new long[1024];
+        _misses = new long[1024];
+        for (int i = 0; i < nkeys; i++) {
+            int scope = _symbols.getScope(-1, _symbols.intern("T"+i));
+            long key = FeatureSet.getKey('f', scope, _symbols.intern("x"+i));
+            _fset.add(key, FeatureSet.TYPE, _symbols.intern("Type"+i));
+        }
+        for (int i = 0; i < _hits.length; i++) {
+            int j = rnd.nextInt(nkeys);
+            int scope = _symbols.getScope(-1, _symbols.intern("T"+j));
+            _hits[i] = FeatureSet.getKey('f', scope, _symbols.intern("x"+j));
+            _misses[i] = FeatureSet.getKey('v', scope, _symbols.intern("x"+j));
+        }
+    }
+
+    @Benchmark
+    public Object namespaceGetKey() {
+        return _space.getKey(2);
+    }
+
+    @Benchmark
+    public Object namespaceToString() {
+        return _space.toString();
+    }
+
+    @Benchmark
+    public Object namespaceCreate() {
+        return new Namespace(_space, "B0");
+    }
+
+    @Benchmark
+    public int lookupHit() {
+        _index = (_index+1) & (_hits.length-1);
+        return _fset.first(_hits[_index]);
+    }
+
+    @Benchmark
+    public int lookupMiss() {
+        _index = (_index+1) & (_misses.length-1);
+        return _fset.first(_misses[_index]);
+    }
+
+    @Benchmark
+    public int resolveChain() {
+        // Probes every enclosing namespace like parseExpr does.
+        int ident = _symbols.intern("x0");
+        int found = -1;
+        for (Namespace space = _space; space != null; space = space.getParent()) {
+            found = _fset.first(FeatureSet.getKey('v', space.getId(), ident));
+            if (0 <= found) break;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,84 @@
+//  LoggerBench.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.lang.management.*;
+
+//  LoggerBench
+//  Measures the bytes allocated per disabled Logger call.
+//
+//  usage:
+//    ant logger-bench
+//
+public class LoggerBench {
+
+    private static final int WARMUP = 1000000;
+    private static final int COUNT = 10000000;
+
+    private static com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    //  Case
+    //
+    private static abstract class Case {
+        public String name;
+        public Case(String name) { this.name = name; }
+        public abstract void run(int i);
+    }
+
+    private static List<String> list = Arrays.asList("a", "b", "c");
+    private static Object sink;
+
+    private static double measure(Case c) {
+        for (int i = 0; i < WARMUP; i++) {
+            c.run(i);
+        }
+        long tid = Thread.currentThread().getId();
+        long t0 = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < COUNT; i++) {
+            c.run(i);
+        }
+        long t1 = bean.getThreadAllocatedBytes(tid);
+        return (t1 - t0) / (double)COUNT;
+    }
+
+    public static void main(String[] args) {
+        Logger.LogLevel = 0;
+        Case[] cases = {
+            new Case("guarded debug with a computed argument") {
+                public void run(int i) {
+                    if (Logger.isDebugEnabled()) {
+                        Logger.debug("addu:", Utils.join(list));
+                    }
+                }
+            },
+            new Case("debug with two arguments") {
+                public void run(int i) {
+                    Logger.debug("parseExpr:", list);
+                }
+            },
+            new Case("debug with three arguments") {
+                public void run(int i) {
+                    Logger.debug("fadd:", list, list);
+                }
+            },
+            new Case("guarded info with a boxed argument") {
+                public void run(int i) {
+                    if (Logger.isInfoEnabled()) {
+                        Logger.info("count:", i);
+                    }
+                }
+            },
+            new Case("unguarded debug with a computed argument") {
+                public void run(int i) {
+                    Logger.debug("addu:", Utils.join(list));
+                }
+            },
+        };
+        for (Case c : cases) {
+            System.out.println(String.format(
+                "%-45s %8.2f bytes/op", c.name, measure(c)));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+//  PipelineBench.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+//  PipelineBench
+//  Runs DefUseExtractor.main on a generated corpus.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipelineBench {
+
+    @Param({"100"})
+    public int files;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"4"})
+    public int density;
+
+    @Param({"1"})
+    public int threads;
+
+    private File _dir;
+    private String[] _args;
+
+    @Setup
+    public void setup() throws IOException {
+        _dir = Files.createTempDirectory("getidents").toFile();
+        CorpusGenerator gen = new CorpusGenerator(0, files, depth, density);
+        List<String> args = new ArrayList<String>();
+        args.add("-j");
+        args.add(Integer.toString(threads));
+        args.add("-o");
+        args.add(new File(_dir, "out.txt").getPath());
+        args.addAll(gen.writeFiles(_dir));
+        _args = new String[args.size()];
+        args.toArray(_args);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walk(_dir.toPath())
+            .sorted(Comparator.reverseOrder())
+            .map(Path::toFile)
+            .forEach(File::delete);
+    }
+
+    @Benchmark
+    public void main() throws IOException {
+        DefUseExtractor.main(_args);
+    }
+}
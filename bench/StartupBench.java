@@ -0,0 +1,86 @@
+//  StartupBench.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  StartupBench
+//  Measures the time to the first output of a command
+//  with and without the AppCDS archive (NOCDS=1).
+//
+//  usage:
+//    java getIdents.StartupBench [-n runs] command args ...
+//
+public class StartupBench {
+
+    // run: returns the times to the first output and to the exit in ms.
+    private static double[] run(List<String> command, boolean cds)
+        throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        if (cds) {
+            pb.environment().remove("NOCDS");
+        } else {
+            pb.environment().put("NOCDS", "1");
+        }
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        long t0 = System.nanoTime();
+        Process proc = pb.start();
+        InputStream in = proc.getInputStream();
+        long t1 = -1;
+        byte[] buf = new byte[8192];
+        while (true) {
+            int n = in.read(buf);
+            if (n < 0) break;
+            if (t1 < 0) {
+                t1 = System.nanoTime();
+            }
+        }
+        int status = proc.waitFor();
+        long t2 = System.nanoTime();
+        if (status != 0) {
+            throw new IOException("Exit status: "+status);
+        }
+        if (t1 < 0) {
+            t1 = t2;
+        }
+        return new double[] { (t1-t0)/1e6, (t2-t0)/1e6 };
+    }
+
+    private static void report(String name, List<String> command,
+                               boolean cds, int runs)
+        throws IOException, InterruptedException {
+        // Warm up the file cache.
+        run(command, cds);
+        double first = 0, total = 0;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            double[] t = run(command, cds);
+            first += t[0];
+            total += t[1];
+            best = Math.min(best, t[0]);
+        }
+        System.out.println(String.format(
+            "%-10s first output: %8.1f ms (best %8.1f ms), exit: %8.1f ms",
+            name, first/runs, best, total/runs));
+    }
+
+    public static void main(String[] args)
+        throws IOException, InterruptedException {
+        int runs = 10;
+        List<String> command = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (command.isEmpty() && arg.equals("-n")) {
+                runs = Integer.parseInt(args[++i]);
+            } else {
+                command.add(arg);
+            }
+        }
+        if (command.isEmpty()) {
+            System.err.println("usage: StartupBench [-n runs] command args ...");
+            System.exit(100);
+        }
+        report("no archive", command, false, runs);
+        report("archive", command, true, runs);
+    }
+}
@@ -0,0 +1,58 @@
+//  BloomFilter.java
+//
+package getIdents;
+import java.util.*;
+
+//  BloomFilter
+//  A set of long keys that answers "maybe" or "no".
+//  With 10 bits per key, about 1% of the absent keys are "maybe".
+//
+class BloomFilter {
+
+    private long[] _bits;
+    private int _mask;
+    private int _nhashes;
+
+    public BloomFilter(int nkeys, int bitsPerKey) {
+        int n = 64;
+        while (n < (long)nkeys * bitsPerKey && n < (1 << 30)) {
+            n *= 2;
+        }
+        _bits = new long[n / 64];
+        _mask = n-1;
+        _nhashes = Math.max(1, (int)Math.round(bitsPerKey * Math.log(2)));
+    }
+
+    // getMemorySize: returns the number of bytes used.
+    public long getMemorySize() {
+        return _bits.length * 8L;
+    }
+
+    public void add(long k) {
+        long h = hash(k);
+        int h1 = (int)h;
+        int h2 = (int)(h >>> 32) | 1;
+        for (int i = 0; i < _nhashes; i++) {
+            int b = (h1 + i*h2) & _mask;
+            _bits[b >>> 6] |= (1L << b);
+        }
+    }
+
+    // mightContain: returns false if the key was never added.
+    public boolean mightContain(long k) {
+        long h = hash(k);
+        int h1 = (int)h;
+        int h2 = (int)(h >>> 32) | 1;
+        for (int i = 0; i < _nhashes; i++) {
+            int b = (h1 + i*h2) & _mask;
+            if ((_bits[b >>> 6] & (1L << b)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static long hash(long k) {
+        k = (k ^ (k >>> 30)) * 0xbf58476d1ce4e5b9L;
+        k = (k ^ (k >>> 27)) * 0x94d049bb133111ebL;
+        return k ^ (k >>> 31);
+    }
+}
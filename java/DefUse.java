@@ -0,0 +1,77 @@
+//  DefUse.java
+//
+package getIdents;
+
+//  DefUse
+//  A record of a definition or a use of a name.
+//  The kind is one of the letters listed in DefUseExtractor.
+//
+public abstract class DefUse {
+
+    public String name;
+
+    public DefUse(String name) {
+        this.name = name;
+    }
+
+    public abstract char getKind();
+
+    @Override
+    public String toString() {
+        return getKind()+this.name;
+    }
+
+    // create: returns a DefUse of a given kind.
+    public static DefUse create(char kind, String name) {
+        switch (kind) {
+        case 'T': return new DefType(name);
+        case 'r': return new RefType(name);
+        case 'e': return new ExtType(name);
+        case 'u': return new UseType(name);
+        case 'F': return new DefFunc(name);
+        case 'f': return new UseFunc(name);
+        case 'V': return new DefVar(name);
+        case 'v': return new UseVar(name);
+        case 'a': return new AssVar(name);
+        default:
+            throw new IllegalArgumentException("Invalid kind: "+kind);
+        }
+    }
+
+    public static class DefType extends DefUse {
+        public DefType(String name) { super(name); }
+        @Override public char getKind() { return 'T'; }
+    }
+    public static class RefType extends DefUse {
+        public RefType(String name) { super(name); }
+        @Override public char getKind() { return 'r'; }
+    }
+    public static class ExtType extends DefUse {
+        public ExtType(String name) { super(name); }
+        @Override public char getKind() { return 'e'; }
+    }
+    public static class UseType extends DefUse {
+        public UseType(String name) { super(name); }
+        @Override public char getKind() { return 'u'; }
+    }
+    public static class DefFunc extends DefUse {
+        public DefFunc(String name) { super(name); }
+        @Override public char getKind() { return 'F'; }
+    }
+    public static class UseFunc extends DefUse {
+        public UseFunc(String name) { super(name); }
+        @Override public char getKind() { return 'f'; }
+    }
+    public static class DefVar extends DefUse {
+        public DefVar(String name) { super(name); }
+        @Override public char getKind() { return 'V'; }
+    }
+    public static class UseVar extends DefUse {
+        public UseVar(String name) { super(name); }
+        @Override public char getKind() { return 'v'; }
+    }
+    public static class AssVar extends DefUse {
+        public AssVar(String name) { super(name); }
+        @Override public char getKind() { return 'a'; }
+    }
+}
@@ -0,0 +1,102 @@
+//  DefUseBinaryWriter.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  DefUseBinaryWriter
+//  Writes def-uses in the binary format:
+//
+//    header: "GIDU" version(byte)
+//    block:  path(str) { group } END
+//    group:  EMPTY | { kind(byte)|MORE name(str) } kind(byte) name(str)
+//    str:    varint 0, varint length, UTF-8 bytes (a new string)
+//          | varint (index+1) (a string that appeared in the block)
+//
+//  A kind byte has MORE (0x80) set when the group continues.
+//
+//  Each block has its own string table, so that blocks can be
+//  encoded independently by the workers.
+//
+public class DefUseBinaryWriter extends DefUseOutput {
+
+    public static final int MAGIC = 0x47494455; // "GIDU"
+    public static final int VERSION = 1;
+    public static final int END = 0;
+    public static final int EMPTY = 1;
+    public static final int MORE = 0x80;
+
+    private Map<String, Integer> _strings = new HashMap<String, Integer>();
+
+    public DefUseBinaryWriter(OutputStream out) {
+        this(out, 65536);
+    }
+
+    public DefUseBinaryWriter(OutputStream out, int bufsize) {
+        super(out, bufsize);
+    }
+
+    @Override
+    public void writeHeader() {
+        writeByte(MAGIC >>> 24);
+        writeByte(MAGIC >>> 16);
+        writeByte(MAGIC >>> 8);
+        writeByte(MAGIC);
+        writeByte(VERSION);
+    }
+
+    @Override
+    public void startFile(String path) {
+        _strings.clear();
+        writeString(path);
+    }
+
+    @Override
+    public void add(DefUse[] defuses) {
+        if (defuses.length == 0) {
+            writeByte(EMPTY);
+            return;
+        }
+        for (int i = 0; i < defuses.length; i++) {
+            int more = (i+1 < defuses.length)? MORE : 0;
+            writeByte(defuses[i].getKind() | more);
+            writeString(defuses[i].name);
+        }
+    }
+
+    @Override
+    public void endFile(String path) {
+        writeByte(END);
+        endBlock();
+    }
+
+    @Override
+    public void writeLines(String path, List<String> lines) {
+        startFile(path);
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                writeByte(EMPTY);
+                continue;
+            }
+            String[] words = line.split(" ");
+            for (int i = 0; i < words.length; i++) {
+                int more = (i+1 < words.length)? MORE : 0;
+                writeByte(words[i].charAt(0) | more);
+                writeString(words[i].substring(1));
+            }
+        }
+        endFile(path);
+    }
+
+    private void writeString(String s) {
+        Integer i = _strings.get(s);
+        if (i != null) {
+            writeVarInt(i+1);
+        } else {
+            _strings.put(s, _strings.size());
+            writeVarInt(0);
+            writeVarInt(getUTF8Length(s));
+            writeUTF8(s);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+//  DefUseCache.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//  DefUseCache
+//  Keeps the output of each file with the feature keys it consulted.
+//  A file is reused if its content and all of its keys are unchanged.
+//
+//  File format:
+//    int magic, int version
+//    varint nentries, { path, hash, varint nlines, { line },
+//                       varint nkeys, { key, value } }
+//  Strings are written with a StringTable.
+//
+public class DefUseCache {
+
+    public static final int MAGIC = 0x47495543; // "GIUC"
+    public static final int VERSION = 2;
+
+    //  Entry
+    //
+    public static class Entry {
+        public String hash;
+        public List<String> lines;
+        public long[] keys;
+        public String[] values;
+    }
+
+    // Entries loaded from the disk.
+    private Map<String, Entry> _entries =
+        new HashMap<String, Entry>();
+    // Entries used in this run, which are saved.
+    private Map<String, Entry> _used =
+        new ConcurrentHashMap<String, Entry>();
+
+    // getValue: returns the features of a key as a comparable string.
+    public static String getValue(FeatureSet fset, long key) {
+        SymbolTable symbols = fset.getSymbols();
+        StringBuilder b = new StringBuilder();
+        for (int i = fset.first(key); 0 <= i; i = fset.next(i)) {
+            if (0 < b.length()) {
+                b.append(" ");
+            }
+            b.append(fset.getFeatKind(i));
+            b.append(symbols.getName(fset.getFeatName(i)));
+        }
+        return b.toString();
+    }
+
+    // get: returns the output of an unchanged file, or null.
+    public List<String> get(String path, String hash, FeatureSet fset) {
+        Entry entry = _entries.get(path);
+        if (entry == null || !entry.hash.equals(hash)) return null;
+        for (int i = 0; i < entry.keys.length; i++) {
+            if (!getValue(fset, entry.keys[i]).equals(entry.values[i])) {
+                if (Logger.isDebugEnabled()) {
+                    Logger.debug("changed:", path,
+                                 fset.getKeyName(entry.keys[i]));
+                }
+                return null;
+            }
+        }
+        _used.put(path, entry);
+        return entry.lines;
+    }
+
+    public void put(String path, String hash, List<String> lines,
+                    Collection<Long> keys, FeatureSet fset) {
+        Entry entry = new Entry();
+        entry.hash = hash;
+        entry.lines = lines;
+        entry.keys = new long[keys.size()];
+        int i = 0;
+        for (long key : keys) {
+            entry.keys[i++] = key;
+        }
+        entry.values = new String[entry.keys.length];
+        for (i = 0; i < entry.keys.length; i++) {
+            entry.values[i] = getValue(fset, entry.keys[i]);
+        }
+        _used.put(path, entry);
+    }
+
+    // retain: keeps the entries used in this run for the next one.
+    public void retain() {
+        _entries.putAll(_used);
+        _used.clear();
+    }
+
+    public void remove(String path) {
+        _entries.remove(path);
+        _used.remove(path);
+    }
+
+    public static DefUseCache load(File file, SymbolTable symbols)
+        throws IOException {
+        DefUseCache cache = new DefUseCache();
+        if (!file.exists()) return cache;
+        FeatureSet fset = new FeatureSet(symbols);
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Logger.info("Ignoring incompatible cache:", file);
+                return cache;
+            }
+            StringTable strings = new StringTable();
+            int nentries = Utils.readVarInt(in);
+            for (int i = 0; i < nentries; i++) {
+                String path = strings.read(in);
+                Entry entry = new Entry();
+                entry.hash = strings.read(in);
+                int nlines = Utils.readVarInt(in);
+                entry.lines = new ArrayList<String>(nlines);
+                for (int j = 0; j < nlines; j++) {
+                    entry.lines.add(strings.read(in));
+                }
+                int nkeys = Utils.readVarInt(in);
+                entry.keys = new long[nkeys];
+                entry.values = new String[nkeys];
+                for (int j = 0; j < nkeys; j++) {
+                    entry.keys[j] = fset.readKey(in, strings);
+                    entry.values[j] = strings.read(in);
+                }
+                cache._entries.put(path, entry);
+            }
+        }
+        Logger.info("Loaded cache:", file, cache._entries.size());
+        return cache;
+    }
+
+    public void save(File file, FeatureSet fset)
+        throws IOException {
+        // Write to a temporary file and replace the old one.
+        File tmp = new File(file.getPath()+".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            StringTable strings = new StringTable();
+            Utils.writeVarInt(out, _used.size());
+            for (Map.Entry<String, Entry> e : _used.entrySet()) {
+                Entry entry = e.getValue();
+                strings.write(out, e.getKey());
+                strings.write(out, entry.hash);
+                Utils.writeVarInt(out, entry.lines.size());
+                for (String line : entry.lines) {
+                    strings.write(out, line);
+                }
+                Utils.writeVarInt(out, entry.keys.length);
+                for (int i = 0; i < entry.keys.length; i++) {
+                    fset.writeKey(out, strings, entry.keys[i]);
+                    strings.write(out, entry.values[i]);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot write cache: "+file);
+            }
+        }
+        Logger.info("Saved cache:", file, _used.size());
+    }
+}
@@ -21,380 +21,68 @@
 //
 package getIdents;
 import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
 import org.eclipse.jdt.core.*;
 import org.eclipse.jdt.core.dom.*;
+import getIdents.DefUse.*;
 
 
-//  Feat
-//
-abstract class Feat {
-    public String name;
-    public Feat(String name) { this.name = name; }
-}
-class TypeFeat extends Feat {
-    TypeFeat(String name) { super(name); }
-    @Override public String toString() { return "T"+this.name; }
-}
-class VarFeat extends Feat {
-    VarFeat(String name) { super(name); }
-    @Override public String toString() { return "V"+this.name; }
-}
-
-
-//  FeatureSet
-//
-class FeatureSet {
-
-    private Map<String, List<Feat> > _feats =
-        new HashMap<String, List<Feat> >();
-
-    public void add(String k, Feat v) {
-        List<Feat> a = _feats.get(k);
-        if (a == null) {
-            a = new ArrayList<Feat>();
-            _feats.put(k, a);
-        }
-        a.add(v);
-    }
-
-    public Feat[] get(String k) {
-        List<Feat> a = _feats.get(k);
-        if (a == null) return null;
-        Feat[] r = new Feat[a.size()];
-        a.toArray(r);
-        return r;
-    }
-
-}
-
-
-//  Namespace
-//
-class Namespace {
-
-    private Namespace _parent;
-    private String _name;
-
-    public Namespace(Namespace parent, String name) {
-        _parent = parent;
-        _name = name;
-    }
-
-    public Namespace(Namespace parent, Name name) {
-        if (name instanceof SimpleName) {
-            _parent = parent;
-            _name = ((SimpleName)name).getIdentifier();
-        } else {
-            _parent = new Namespace(parent, ((QualifiedName)name).getQualifier());
-            _name = ((QualifiedName)name).getName().getIdentifier();
-        }
-    }
-
-    @Override
-    public String toString() {
-        if (_parent == null) {
-            return _name;
-        } else {
-            return _parent.toString()+"."+_name;
-        }
-    }
-
-    public Namespace getParent() {
-        return _parent;
-    }
-
-    public Namespace findParent(String t) {
-        Namespace space = this;
-        while (space != null && !space._name.startsWith(t)) {
-            space = space._parent;
-        }
-        return space;
-    }
-
-    public String getKey(int i) {
-        Namespace space = this;
-        String name = null;
-        while (space != null && 0 < i) {
-            if (name == null) {
-                name = space._name;
-            } else {
-                name = space._name + "." + name;
-            }
-            i--;
-            space = space._parent;
-        }
-        return name;
-    }
-}
-
-
-//  NamespaceWalker
-//
-class NamespaceWalker extends ASTVisitor {
-
-    private Namespace _current = new Namespace(null, "");
-
-    public Namespace getCurrent() {
-        return _current;
-    }
-
-    public Namespace findParent(String t) {
-        return _current.findParent(t);
-    }
-
-    @Override
-    public boolean visit(PackageDeclaration node) {
-        _current = new Namespace(null, node.getName());
-        return true;
-    }
-
-    @Override
-    public boolean visit(TypeDeclaration node) {
-        push("T"+node.getName().getIdentifier());
-        return true;
-    }
-    @Override
-    public void endVisit(TypeDeclaration node) {
-        pop();
-    }
-
-    @Override
-    public boolean visit(AnnotationTypeDeclaration node) {
-        push("A"+node.getName().getIdentifier());
-        return true;
-    }
-    @Override
-    public void endVisit(AnnotationTypeDeclaration node) {
-        pop();
-    }
-
-    @Override
-    public boolean visit(TypeDeclarationStatement node) {
-        push("T"+node.getDeclaration().getName().getIdentifier());
-        return true;
-    }
-    @Override
-    public void endVisit(TypeDeclarationStatement node) {
-        pop();
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(EnumDeclaration node) {
-        push("T"+node.getName().getIdentifier());
-        return true;
-    }
-    @Override
-    public void endVisit(EnumDeclaration node) {
-        pop();
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(MethodDeclaration node) {
-        push("M"+node.getName().getIdentifier());
-        return true;
-    }
-    @Override
-    public void endVisit(MethodDeclaration node) {
-        pop();
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(Initializer node) {
-        push("M:static");
-        return true;
-    }
-    @Override
-    public void endVisit(Initializer node) {
-        pop();
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(LambdaExpression node) {
-        push("M:lambda"+node.getStartPosition());
-        return true;
-    }
-    @Override
-    public void endVisit(LambdaExpression node) {
-        pop();
-    }
-
-    @Override
-    public boolean visit(Block node) {
-        push("B"+node.getStartPosition());
-        return true;
-    }
-    @Override
-    public void endVisit(Block node) {
-        pop();
-    }
-
-    private void push(String name) {
-        _current = new Namespace(_current, name);
-        Logger.debug("current:", _current);
-    }
-    private void pop() {
-        assert _current != null;
-        _current = _current.getParent();
-    }
-}
-
-
-//  FeatExtractor
+//  DefUseExtractor
 //
-class FeatExtractor extends NamespaceWalker {
+public class DefUseExtractor extends NamespaceWalker {
 
     private FeatureSet _fset;
-
-    public FeatExtractor(FeatureSet fset) {
-        super();
+    private SymbolTable _symbols;
+    private DefUseSink _sink;
+    private Set<Long> _keys = null;
+    private int _hits = 0;
+    private int _misses = 0;
+    // Resolved simple names of the file.
+    private ResolutionCache _cache = new ResolutionCache(512);
+    // Ids of the simple names of the file for the cache and the locals.
+    private PhraseTable _idents = new PhraseTable();
+
+    public DefUseExtractor(FeatureSet fset, DefUseSink sink) {
+        super(fset.getSymbols());
         _fset = fset;
+        _symbols = fset.getSymbols();
+        _sink = sink;
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(EnumDeclaration node) {
-        super.visit(node);
-        String typename = getCurrent().getKey(1);
-        for (EnumConstantDeclaration frag :
-                 (List<EnumConstantDeclaration>)node.enumConstants()) {
-            String name = frag.getName().getIdentifier();
-            String key = "v"+getCurrent()+"."+name;
-            fadd(key, new TypeFeat(typename));
-        }
-        return true;
+    // extract: sends the def-uses of a file to the sink.
+    public void extract(String path, CompilationUnit cunit) {
+        _sink.startFile(path);
+        cunit.accept(this);
+        _sink.endFile(path);
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public void endVisit(MethodDeclaration node) {
-        Namespace parent = findParent("M");
-        if (parent == null) return;
-        String key = "m"+parent.getKey(2);
-        for (SingleVariableDeclaration decl :
-                 (List<SingleVariableDeclaration>)node.parameters()) {
-            String name = decl.getName().getIdentifier();
-            fadd(key, new VarFeat(name));
-        }
-        String typename = Utils.typeName(node.getReturnType2());
-        if (typename != null) {
-            fadd(key, new TypeFeat(typename));
-        }
-        super.endVisit(node);
+    // trackKeys: records every feature key consulted.
+    public void trackKeys() {
+        _keys = new HashSet<Long>();
     }
 
-    @Override
-    public boolean visit(SingleVariableDeclaration node) {
-        String name = node.getName().getIdentifier();
-        String key = "v"+getCurrent()+"."+name;
-        String typename = Utils.typeName(node.getType());
-        if (typename != null) {
-            fadd(key, new TypeFeat(typename));
-        }
-        return true;
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(VariableDeclarationStatement node) {
-        String typename = Utils.typeName(node.getType());
-        if (typename != null) {
-            for (VariableDeclarationFragment frag :
-                     (List<VariableDeclarationFragment>)node.fragments()) {
-                String name = frag.getName().getIdentifier();
-                String key = "v"+getCurrent()+"."+name;
-                fadd(key, new TypeFeat(typename));
-            }
-        }
-        return true;
+    // getHits/getMisses: returns the number of resolved
+    //   and unresolved lookups.
+    public int getHits() {
+        return _hits;
     }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean visit(FieldDeclaration node) {
-        Namespace parent = findParent("T");
-        if (parent == null) return false;
-        String typename = Utils.typeName(node.getType());
-        if (typename != null) {
-            for (VariableDeclarationFragment frag :
-                     (List<VariableDeclarationFragment>)node.fragments()) {
-                String name = frag.getName().getIdentifier();
-                String key = "f"+parent.getKey(1)+"."+name;
-                fadd(key, new TypeFeat(typename));
-            }
-        }
-        return true;
+    public int getMisses() {
+        return _misses;
     }
 
-    private void fadd(String key, Feat value) {
-        Logger.debug("fadd:", key, value);
-        _fset.add(key, value);
+    // getCacheHits/getCacheMisses: returns the number of simple names
+    //   found and not found in the resolution cache.
+    public int getCacheHits() {
+        return _cache.getHits();
     }
-}
-
-
-//  DefUse
-//
-abstract class DefUse {
-    public String name;
-    public DefUse(String name) { this.name = name; }
-}
-class DefType extends DefUse {
-    DefType(String name) { super(name); }
-    @Override public String toString() { return "T"+this.name; }
-}
-class RefType extends DefUse {
-    RefType(String name) { super(name); }
-    @Override public String toString() { return "r"+this.name; }
-}
-class ExtType extends DefUse {
-    ExtType(String name) { super(name); }
-    @Override public String toString() { return "e"+this.name; }
-}
-class UseType extends DefUse {
-    UseType(String name) { super(name); }
-    @Override public String toString() { return "u"+this.name; }
-}
-class DefFunc extends DefUse {
-    DefFunc(String name) { super(name); }
-    @Override public String toString() { return "F"+this.name; }
-}
-class UseFunc extends DefUse {
-    UseFunc(String name) { super(name); }
-    @Override public String toString() { return "f"+this.name; }
-}
-class DefVar extends DefUse {
-    DefVar(String name) { super(name); }
-    @Override public String toString() { return "V"+this.name; }
-}
-class UseVar extends DefUse {
-    UseVar(String name) { super(name); }
-    @Override public String toString() { return "v"+this.name; }
-}
-class AssVar extends DefUse {
-    AssVar(String name) { super(name); }
-    @Override public String toString() { return "a"+this.name; }
-}
-
-
-//  DefUseExtractor
-//
-public class DefUseExtractor extends NamespaceWalker {
-
-    private FeatureSet _fset;
-    private List<DefUse[]> _defuses = new ArrayList<DefUse[]>();
-
-    public DefUseExtractor(FeatureSet fset) {
-        super();
-        _fset = fset;
+    public int getCacheMisses() {
+        return _cache.getMisses();
     }
 
-    public List<DefUse[]> getResults() {
-        return _defuses;
+    public Set<Long> getKeys() {
+        return _keys;
     }
 
     @Override
@@ -475,6 +163,7 @@ public class DefUseExtractor extends NamespaceWalker {
                  (List<VariableDeclarationFragment>)node.fragments()) {
             SimpleName name = frag.getName();
             a.add(new DefVar(name.getIdentifier()));
+            declare(name.getIdentifier(), node.getType());
             Expression expr1 = frag.getInitializer();
             if (expr1 != null) {
                 parseExpr(expr1);
@@ -509,18 +198,94 @@ public class DefUseExtractor extends NamespaceWalker {
             a.add(new UseType(typename));
         }
         a.add(new DefVar(name));
+        declare(name, node.getType());
         addu(a);
         return true;
     }
 
+    // declare: records a local variable.
+    private void declare(String name, Type type) {
+        int ident = _idents.intern(name);
+        _cache.declare(ident);
+        LocalTable locals = getLocals();
+        if (locals != null) {
+            String typename = Utils.typeName(type);
+            if (typename != null) {
+                locals.declare(ident, typename);
+            }
+        }
+    }
+
     private void handleExpr(Expression expr) {
-        Logger.debug("handleExpr:", expr.getClass().getName());
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("handleExpr:", expr.getClass().getName());
+        }
         parseExpr(expr);
     }
 
+    // resolveName: looks up a simple name in the local variables,
+    //   in the enclosing namespaces and then in the fields of the
+    //   enclosing types.
+    private String resolveName(String name) {
+        LocalTable locals = getLocals();
+        int scope = getSerial();
+        int local = _idents.intern(name);
+        int slot = _cache.find(scope, local);
+        if (0 <= slot) return _cache.getValue(slot);
+        String typename = null;
+        if (locals != null) {
+            typename = locals.lookup(local);
+        }
+        int ident = findName(name);
+        Namespace space = getCurrent();
+        while (typename == null && space != null) {
+            typename = resolveType('v', getId(space), ident);
+            if (typename != null) break;
+            space = space.getParent();
+        }
+        if (typename == null) {
+            space = findParent("T");
+            while (space != null) {
+                typename = resolveType('f', getLocalId(space), ident);
+                if (typename != null) break;
+                space = space.getParent();
+                if (space == null) break;
+                space = space.findParent("T");
+            }
+        }
+        _cache.put(scope, local, typename);
+        return typename;
+    }
+
+    // Pass 2 only looks up the names and namespaces of Pass 1, so that
+    // arbitrary text is not interned. When the consulted keys are
+    // tracked, they are interned since a missing key can be added later.
+
+    // findName: returns the id of a name, or -1 if no key has it.
+    private int findName(String name) {
+        if (_keys != null) return _symbols.intern(name);
+        return _fset.findName(name);
+    }
+
+    // findTypeScope: returns the namespace "T"+name at the top level,
+    //   or -1 if no key has it.
+    private int findTypeScope(String name) {
+        if (_keys != null) return _symbols.getTypeScope(name);
+        if (name == null) return -1;
+        return _fset.findScope(-1, _fset.findName("T"+name));
+    }
+
+    @Override
+    protected int getScope(int parent, String name) {
+        if (_keys != null) return super.getScope(parent, name);
+        return _fset.findScope(parent, _fset.findName(name));
+    }
+
     @SuppressWarnings("unchecked")
     private String parseExpr(Expression expr) {
-        Logger.debug("parseExpr:", expr);
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("parseExpr:", expr);
+        }
         String typename = null;
         if (expr instanceof Annotation) {
             // "@Annotation"
@@ -530,22 +295,7 @@ public class DefUseExtractor extends NamespaceWalker {
             if (name instanceof SimpleName) {
                 SimpleName sname = (SimpleName)name;
                 String id = sname.getIdentifier();
-                Namespace space = getCurrent();
-                while (space != null) {
-                    typename = resolveType("v"+space+"."+id);
-                    if (typename != null) break;
-                    space = space.getParent();
-                }
-                if (typename == null) {
-                    space = findParent("T");
-                    while (space != null) {
-                        typename = resolveType("f"+space.getKey(1)+"."+id);
-                        if (typename != null) break;
-                        space = space.getParent();
-                        if (space == null) break;
-                        space = space.findParent("T");
-                    }
-                }
+                typename = resolveName(id);
                 if (typename != null) {
                     addu(new UseVar(id));
                 }
@@ -556,7 +306,8 @@ public class DefUseExtractor extends NamespaceWalker {
                 List<DefUse> a = new ArrayList<DefUse>();
                 if (klass != null) {
                     a.add(new RefType(klass));
-                    typename = resolveType("fT"+klass+"."+id);
+                    typename = resolveType(
+                        'f', findTypeScope(klass), findName(id));
                 }
                 a.add(new UseVar(id));
                 addu(a);
@@ -618,15 +369,19 @@ public class DefUseExtractor extends NamespaceWalker {
                 String klass = parseExpr(expr1);
                 if (klass != null) {
                     a.add(new RefType(klass));
-                    typename = resolveFunc("mT"+klass+".M"+id, a);
+                    typename = resolveFunc(
+                        'm', findTypeScope(klass), findName(id), a);
                 }
                 if (typename == null) {
-                    typename = resolveFunc("mT"+expr1+".M"+id, a);
+                    typename = resolveFunc(
+                        'm', findTypeScope(expr1.toString()),
+                        findName(id), a);
                 }
             } else {
                 String klass = findParent("T").getKey(1).substring(1);
                 a.add(new RefType(klass));
-                typename = resolveFunc("mT"+klass+".M"+id, a);
+                typename = resolveFunc(
+                    'm', findTypeScope(klass), findName(id), a);
             }
             addu(a);
             for (Expression arg : (List<Expression>)invoke.arguments()) {
@@ -668,7 +423,8 @@ public class DefUseExtractor extends NamespaceWalker {
             if (klass != null) {
                 a.add(new RefType(klass));
             }
-            typename = resolveType("fT"+klass+"."+id);
+            typename = resolveType(
+                'f', findTypeScope(klass), findName(id));
             a.add(new UseVar(id));
             addu(a);
         } else if (expr instanceof SuperFieldAccess) {
@@ -680,7 +436,8 @@ public class DefUseExtractor extends NamespaceWalker {
             if (klass != null) {
                 a.add(new RefType(klass));
             }
-            typename = resolveType("fT"+klass+"."+id);
+            typename = resolveType(
+                'f', findTypeScope(klass), findName(id));
             a.add(new UseVar(id));
         } else if (expr instanceof CastExpression) {
             // "(String)"
@@ -701,7 +458,8 @@ public class DefUseExtractor extends NamespaceWalker {
             if (expr1 != null) {
                 parseExpr(expr1);
             }
-            resolveFunc("mT"+typename+".M"+typename, a);
+            resolveFunc(
+                'm', findTypeScope(typename), findName(typename), a);
             for (Expression arg : (List<Expression>)cstr.arguments()) {
                 parseExpr(arg);
             }
@@ -730,7 +488,9 @@ public class DefUseExtractor extends NamespaceWalker {
 
     @SuppressWarnings("unchecked")
     private void parseAssign(Expression expr) {
-        Logger.debug("parseAssign:", expr);
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("parseAssign:", expr);
+        }
         if (expr instanceof Annotation) {
             // "@Annotation"
         } else if (expr instanceof Name) {
@@ -793,6 +553,7 @@ public class DefUseExtractor extends NamespaceWalker {
                      (List<VariableDeclarationFragment>)decl.fragments()) {
                 SimpleName name = frag.getName();
                 a.add(new UseVar(name.getIdentifier()));
+                _cache.declare(_idents.intern(name.getIdentifier()));
                 Expression expr1 = frag.getInitializer();
                 if (expr1 != null) {
                     parseExpr(expr1);
@@ -852,55 +613,399 @@ public class DefUseExtractor extends NamespaceWalker {
     }
 
     private void addu(DefUse du) {
-        Logger.debug("addu:", du);
-        _defuses.add(new DefUse[] { du });
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("addu:", du);
+        }
+        _sink.add(new DefUse[] { du });
     }
 
     private void addu(List<DefUse> dus) {
-        Logger.debug("addu:", Utils.join(dus));
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("addu:", Utils.join(dus));
+        }
         DefUse[] a = new DefUse[dus.size()];
         dus.toArray(a);
-        _defuses.add(a);
+        _sink.add(a);
     }
 
-    private String resolveType(String key) {
+    private String resolveType(char kind, int scope, int ident) {
+        long key = FeatureSet.getKey(kind, scope, ident);
         String typename = null;
-        Feat[] feats = _fset.get(key);
-        if (feats != null) {
-            for (Feat feat : feats) {
-                if (feat instanceof TypeFeat) {
-                    typename = feat.name;
-                    break;
-                }
+        if (_keys != null && 0 <= key) {
+            _keys.add(key);
+        }
+        for (int i = _fset.first(key); 0 <= i; i = _fset.next(i)) {
+            if (_fset.getFeatKind(i) == FeatureSet.TYPE) {
+                typename = _symbols.getName(_fset.getFeatName(i));
+                break;
             }
         }
-        Logger.debug("resolveType:", key, "->", typename);
+        if (typename != null) {
+            _hits++;
+        } else {
+            _misses++;
+        }
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("resolveType:", _fset.getKeyName(key), "->", typename);
+        }
         return typename;
     }
 
-    private String resolveFunc(String key, List<DefUse> a) {
+    private String resolveFunc(
+        char kind, int scope, int ident, List<DefUse> a) {
+        long key = FeatureSet.getKey(kind, scope, ident);
         String typename = null;
-        Feat[] feats = _fset.get(key);
-        if (feats != null) {
-            for (Feat feat : feats) {
-                if (feat instanceof TypeFeat) {
-                    typename = feat.name;
-                } else if (feat instanceof VarFeat) {
-                    a.add(new AssVar(feat.name));
-                }
+        if (_keys != null && 0 <= key) {
+            _keys.add(key);
+        }
+        for (int i = _fset.first(key); 0 <= i; i = _fset.next(i)) {
+            String name = _symbols.getName(_fset.getFeatName(i));
+            switch (_fset.getFeatKind(i)) {
+            case FeatureSet.TYPE:
+                typename = name;
+                break;
+            case FeatureSet.VAR:
+                a.add(new AssVar(name));
+                break;
             }
         }
-        Logger.debug("resolveFunc:", key, "->", typename);
+        if (typename != null) {
+            _hits++;
+        } else {
+            _misses++;
+        }
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("resolveFunc:", _fset.getKeyName(key), "->", typename);
+        }
         return typename;
     }
 
+    // getHash: returns the hash of a file, which differs with -l
+    //   because the features and def-uses are recorded differently.
+    static String getHash(byte[] data, boolean locals) {
+        String hash = FeatureCache.getHash(data);
+        return (locals)? "l"+hash : hash;
+    }
+
+    // parseFile
+    private static Charset charset = Charset.defaultCharset();
+    private static ThreadLocal<JavaParser> parsers =
+        new ThreadLocal<JavaParser>() {
+            @Override
+            protected JavaParser initialValue() {
+                return new JavaParser(charset);
+            }
+        };
+
+    // setCharset: sets the charset of the files parsed after this.
+    public static void setCharset(Charset cs) {
+        charset = cs;
+    }
+
+    public static JavaParser getParser() {
+        return parsers.get();
+    }
+
+    public static CompilationUnit parseFile(String path)
+        throws IOException {
+        return parseFile(path, readFile(path));
+    }
+
+    public static byte[] readFile(String path)
+        throws IOException {
+        try (FileInputStream fp = new FileInputStream(path)) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            while (true) {
+                int n = fp.read(buf, 0, buf.length);
+                if (n < 0) break;
+                b.write(buf, 0, n);
+            }
+            return b.toByteArray();
+        }
+    }
+
+    public static CompilationUnit parseFile(String path, byte[] data) {
+        return getParser().parse(path, data);
+    }
+
+    public static ASTParser newParser() {
+        return JavaParser.newParser();
+    }
+
+    // getLine
+    public static String getLine(DefUse[] defuses) {
+        StringBuilder b = new StringBuilder();
+        for (DefUse du : defuses) {
+            if (0 < b.length()) {
+                b.append(" ");
+            }
+            b.append(du.getKind());
+            b.append(du.name);
+        }
+        return b.toString();
+    }
+
+    //  Pass1Task
+    //  Parses a file and collects its features into its own FeatureSet.
+    //  The features are taken from the cache if the file is unchanged.
+    //
+    static class Pass1Task implements Callable<Pass1Task> {
+
+        public String path;
+        public byte[] data;
+        public boolean keep;
+        public boolean hashing;
+        public FeatureCache cache;
+        public SymbolTable symbols;
+        public String hash;
+        public CompilationUnit cunit;
+        public FeatureSet fset;
+        public Stats stats = null;
+        public boolean locals = false;
+
+        public Pass1Task(String path, boolean keep, boolean hashing,
+                         FeatureCache cache, SymbolTable symbols) {
+            this.path = path;
+            this.keep = keep;
+            this.hashing = hashing;
+            this.cache = cache;
+            this.symbols = symbols;
+        }
+
+        @Override
+        public Pass1Task call() throws IOException {
+            long t0 = System.nanoTime();
+            if (data == null) {
+                data = readFile(path);
+            }
+            long t1 = System.nanoTime();
+            if (stats != null) {
+                Stats.FileStats fs = stats.getFile(path);
+                fs.bytes = data.length;
+                fs.readTime += t1-t0;
+            }
+            if (hashing || cache != null) {
+                hash = getHash(data, locals);
+            }
+            if (cache != null) {
+                fset = cache.get(hash);
+                if (fset != null) {
+                    if (Logger.isInfoEnabled()) {
+                        Logger.info("  cached:", path);
+                    }
+                    if (stats != null) {
+                        stats.countPass1(stats.getFile(path));
+                    }
+                    return this;
+                }
+            }
+            if (Logger.isInfoEnabled()) {
+                Logger.info("  parsing:", path);
+            }
+            CompilationUnit cunit = parseFile(path, data);
+            if (stats != null) {
+                stats.getFile(path).parseTime += System.nanoTime()-t1;
+            }
+            extract(cunit);
+            data = null;
+            return this;
+        }
+
+        public void extract(CompilationUnit cunit) {
+            long t0 = System.nanoTime();
+            fset = new FeatureSet(symbols);
+            FeatExtractor extractor = new FeatExtractor(fset);
+            if (locals) {
+                extractor.useLocals();
+            }
+            cunit.accept(extractor);
+            if (cache != null) {
+                cache.put(hash, fset);
+            }
+            if (keep) {
+                this.cunit = cunit;
+            }
+            if (stats != null) {
+                Stats.FileStats fs = stats.getFile(path);
+                fs.nodes = Math.max(fs.nodes, extractor.getNodeCount());
+                fs.pass1Time += System.nanoTime()-t0;
+                stats.countPass1(fs);
+            }
+        }
+    }
+
+    //  Pass2Task
+    //  Extracts def-uses from a parsed file.
+    //  The previous output is reused if the file is unchanged.
+    //
+    static class Pass2Task implements Callable<byte[]> {
+
+        public String path;
+        public byte[] data;
+        public CompilationUnit cunit;
+        public FeatureSet fset;
+        public DefUseCache state;
+        public String hash;
+        public boolean binary;
+        public Stats stats = null;
+        public boolean locals = false;
+
+        public Pass2Task(String path, CompilationUnit cunit, FeatureSet fset,
+                         DefUseCache state, String hash, boolean binary) {
+            this.path = path;
+            this.cunit = cunit;
+            this.fset = fset;
+            this.state = state;
+            this.hash = hash;
+            this.binary = binary;
+        }
+
+        public void run(DefUseOutput out) throws IOException {
+            if (state != null && hash == null) {
+                // Pass 1 was run in another process.
+                if (data == null) {
+                    data = readFile(path);
+                }
+                hash = getHash(data, locals);
+            }
+            if (state != null) {
+                List<String> lines = state.get(path, hash, fset);
+                if (lines != null) {
+                    if (Logger.isInfoEnabled()) {
+                        Logger.info("  unchanged:", path);
+                    }
+                    out.writeLines(path, lines);
+                    if (stats != null) {
+                        stats.countPass2(stats.getFile(path));
+                    }
+                    return;
+                }
+            }
+            if (Logger.isInfoEnabled()) {
+                Logger.info("  parsing:", path);
+            }
+            if (cunit == null) {
+                long t0 = System.nanoTime();
+                if (data == null) {
+                    data = readFile(path);
+                }
+                long t1 = System.nanoTime();
+                cunit = parseFile(path, data);
+                data = null;
+                if (stats != null) {
+                    Stats.FileStats fs = stats.getFile(path);
+                    fs.readTime += t1-t0;
+                    fs.parseTime += System.nanoTime()-t1;
+                }
+            }
+            long t0 = System.nanoTime();
+            if (state == null) {
+                // Write the def-uses as they are extracted.
+                DefUseExtractor extractor = new DefUseExtractor(fset, out);
+                if (locals) {
+                    extractor.useLocals();
+                }
+                extractor.extract(path, cunit);
+                cunit = null;
+                record(extractor, t0);
+                return;
+            }
+            // Keep the lines to store them in the state.
+            final List<String> lines = new ArrayList<String>();
+            DefUseExtractor extractor = new DefUseExtractor(
+                fset, new DefUseSink() {
+                    @Override
+                    public void startFile(String path) { }
+                    @Override
+                    public void add(DefUse[] defuses) {
+                        lines.add(getLine(defuses));
+                    }
+                    @Override
+                    public void endFile(String path) { }
+                });
+            if (locals) {
+                extractor.useLocals();
+            }
+            extractor.trackKeys();
+            extractor.extract(path, cunit);
+            cunit = null;
+            state.put(path, hash, lines, extractor.getKeys(), fset);
+            out.writeLines(path, lines);
+            record(extractor, t0);
+        }
+
+        private void record(DefUseExtractor extractor, long t0) {
+            if (stats == null) return;
+            stats.addPass2(path, System.nanoTime()-t0, extractor);
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            DefUseOutput out = newOutput(buf, 8192, binary);
+            run(out);
+            out.flush();
+            return buf.toByteArray();
+        }
+    }
+
+    public static DefUseOutput newOutput(
+        OutputStream output, int bufsize, boolean binary) {
+        if (binary) {
+            return new DefUseBinaryWriter(output, bufsize);
+        } else {
+            return new DefUseWriter(output, bufsize);
+        }
+    }
+
+    static <T> T getResult(Future<T> future)
+        throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException)t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            } else if (t instanceof Error) {
+                throw (Error)t;
+            }
+            throw new IOException(t);
+        }
+    }
+
     // main
     @SuppressWarnings("unchecked")
     public static void main(String[] args)
         throws IOException {
 
         List<String> files = new ArrayList<String>();
-        PrintStream out = System.out;
+        OutputStream output = new FileOutputStream(FileDescriptor.out);
+        int nthreads = 1;
+        int flushBlocks = 0;
+        boolean binary = false;
+        boolean phrases = false;
+        int glossary = 0;
+        String dfPath = null;
+        String statsPath = null;
+        int interval = 0;
+        boolean streaming = false;
+        boolean locals0 = false;
+        String cachePath = null;
+        String statePath = null;
+        List<String> includes = new ArrayList<String>();
+        List<String> excludes = new ArrayList<String>();
+        long maxSize = -1;
+        long heapSize = -1;
+        long reorderSize = 64*1024*1024;
+        int shard = 0;
+        int nshards = 1;
+        String partialPath = null;
+        String indexPath = null;
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
             if (arg.equals("--")) {
@@ -909,6 +1014,54 @@ public class DefUseExtractor extends NamespaceWalker {
                 }
             } else if (arg.equals("-v")) {
                 Logger.LogLevel++;
+            } else if (arg.equals("-j")) {
+                nthreads = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-e")) {
+                setCharset(Charset.forName(args[++i]));
+            } else if (arg.equals("-b")) {
+                binary = true;
+            } else if (arg.equals("-w")) {
+                phrases = true;
+            } else if (arg.equals("-g")) {
+                glossary = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-d")) {
+                dfPath = args[++i];
+            } else if (arg.equals("-m")) {
+                statsPath = args[++i];
+            } else if (arg.equals("-t")) {
+                interval = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-F")) {
+                flushBlocks = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-s")) {
+                streaming = true;
+            } else if (arg.equals("-l")) {
+                locals0 = true;
+            } else if (arg.equals("-c")) {
+                cachePath = args[++i];
+            } else if (arg.equals("-u")) {
+                statePath = args[++i];
+            } else if (arg.equals("-k")) {
+                String[] k = args[++i].split("/", 2);
+                shard = Integer.parseInt(k[0]);
+                nshards = Integer.parseInt(k[1]);
+                if (shard < 0 || nshards <= shard) {
+                    System.err.println("Invalid shard: "+args[i]);
+                    System.exit(1);
+                }
+            } else if (arg.equals("-p")) {
+                partialPath = args[++i];
+            } else if (arg.equals("-x")) {
+                indexPath = args[++i];
+            } else if (arg.equals("-I")) {
+                includes.add(args[++i]);
+            } else if (arg.equals("-X")) {
+                excludes.add(args[++i]);
+            } else if (arg.equals("-S")) {
+                maxSize = Long.parseLong(args[++i]);
+            } else if (arg.equals("-M")) {
+                heapSize = Long.parseLong(args[++i]);
+            } else if (arg.equals("-R")) {
+                reorderSize = Long.parseLong(args[++i]);
             } else if (arg.equals("-i")) {
                 String path = args[++i];
                 InputStream input = System.in;
@@ -929,11 +1082,11 @@ public class DefUseExtractor extends NamespaceWalker {
             } else if (arg.equals("-o")) {
                 String path = args[++i];
                 try {
-                    out = new PrintStream(new FileOutputStream(path));
+                    output = new FileOutputStream(path);
                 } catch (IOException e) {
                     System.err.println("Cannot open output file: "+path);
                 }
-            } else if (arg.startsWith("-")) {
+            } else if (arg.startsWith("-") && !arg.equals("-")) {
                 System.err.println("Unknown option: "+arg);
                 System.exit(1);
             } else {
@@ -941,67 +1094,247 @@ public class DefUseExtractor extends NamespaceWalker {
             }
         }
 
-        FeatureSet fset = new FeatureSet();
+        // Pass 1 needs the features of every file, so -u caches them
+        // too, otherwise the unchanged files would still be parsed.
+        if (statePath != null && cachePath == null && indexPath == null) {
+            cachePath = statePath+".features";
+        }
+        // Only Pass 1 is run with -p, and only Pass 2 with -x.
+        if (partialPath != null || indexPath != null) {
+            streaming = true;
+        }
+
+        // Run both passes on a worker pool when -j is given.
+        // The workers must not keep the JVM alive when a pass fails.
+        ExecutorService pool = null;
+        if (1 < nthreads) {
+            pool = Executors.newFixedThreadPool(nthreads, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "DefUseExtractor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+
+        final SymbolTable symbols = new SymbolTable();
+        // With -M, features beyond the budget are spilled to the disk.
+        // A frozen index is used in place.
+        FeatureSet fset0;
+        if (indexPath != null &&
+            FrozenFeatureSet.isFrozen(new File(indexPath))) {
+            fset0 = new FrozenFeatureSet(symbols, new File(indexPath));
+        } else if (0 <= heapSize) {
+            fset0 = new SpillFeatureSet(symbols, heapSize);
+        } else {
+            fset0 = new FeatureSet(symbols);
+        }
+        final FeatureSet fset = fset0;
+        FeatureCache cache = null;
+        if (cachePath != null) {
+            cache = FeatureCache.load(new File(cachePath), symbols);
+        }
+        DefUseCache state = null;
+        if (statePath != null) {
+            state = DefUseCache.load(new File(statePath), symbols);
+        }
+
+        Stats stats0 = null;
+        if (statsPath != null || 0 < interval) {
+            stats0 = new Stats();
+            if (0 < interval) {
+                stats0.startReporter(interval);
+            }
+        }
+        final Stats stats = stats0;
+        final boolean locals = locals0;
 
+        // In streaming mode, ASTs are not retained between the passes
+        // and each file is parsed again in Pass 2. Files whose features
+        // are cached are parsed only in Pass 2.
         Logger.info("Pass 1.");
-        String[] srcpath = { "." };
-        Map<String, CompilationUnit> cunits = new HashMap<String, CompilationUnit>();
+        final Map<String, CompilationUnit> cunits = new HashMap<String, CompilationUnit>();
+        final Map<String, String> hashes = new HashMap<String, String>();
+        // Contents of archive entries, which cannot be read by their paths.
+        Map<String, byte[]> contents = new HashMap<String, byte[]>();
+        // Archives and directories are expanded by the reader.
+        boolean expand = false;
         for (String path : files) {
-            Logger.info("  parsing:", path);
-            String src;
-            {
-                // Read an entire file as a String.
-                StringBuilder b = new StringBuilder();
-                try (FileReader fp = new FileReader(path)) {
-                    char[] buf = new char[8192];
-                    while (true) {
-                        int n = fp.read(buf, 0, buf.length);
-                        if (n < 0) break;
-                        b.append(buf, 0, n);
-                    }
+            expand = expand || SourceReader.isContainer(path);
+        }
+        DirWalker walker = new DirWalker(Math.max(4, nthreads));
+        for (String glob : includes) {
+            walker.addInclude(glob);
+        }
+        for (String glob : excludes) {
+            walker.addExclude(glob);
+        }
+        walker.setMaxSize(maxSize);
+        int start = 0;
+        int end = Integer.MAX_VALUE;
+        if (1 < nshards) {
+            // Take a contiguous slice of the expanded inputs so that
+            // merging the shards in order keeps the order of the features.
+            if (expand) {
+                if (files.contains("-")) {
+                    System.err.println("Cannot shard stdin.");
+                    System.exit(1);
+                }
+                SourceReader counter = new SourceReader(files, walker, 64, 0, 0);
+                while (counter.next() != null) {
+                }
+                int n = counter.getCount();
+                start = (int)((long)n*shard/nshards);
+                end = (int)((long)n*(shard+1)/nshards);
+            } else {
+                int n = files.size();
+                files = new ArrayList<String>(
+                    files.subList((int)((long)n*shard/nshards),
+                                  (int)((long)n*(shard+1)/nshards)));
+            }
+        }
+        List<String> sources = (expand)? new ArrayList<String>() : files;
+        if (indexPath != null && !(fset instanceof FrozenFeatureSet)) {
+            FeatureIndex.load(new File(indexPath), fset);
+        }
+        // The inputs are read (and directories are walked)
+        // in the background while they are parsed.
+        SourceReader reader = new SourceReader(files, walker, 64, start, end);
+        List<Future<Pass1Task> > tasks = new ArrayList<Future<Pass1Task> >();
+        while (true) {
+            SourceReader.Source src = reader.next();
+            if (src == null) break;
+            if (expand) {
+                sources.add(src.path);
+            }
+            if (src.data != null && (streaming || cache != null) &&
+                partialPath == null) {
+                contents.put(src.path, src.data);
+            }
+            if (indexPath != null) continue;
+            Pass1Task task = new Pass1Task(
+                src.path, !streaming, state != null, cache, symbols);
+            task.data = src.data;
+            task.stats = stats;
+            task.locals = locals;
+            if (pool == null) {
+                task.call();
+                if (!streaming) {
+                    cunits.put(task.path, task.cunit);
                 }
-                src = b.toString();
+                hashes.put(task.path, task.hash);
+                fset.addAll(task.fset);
+            } else {
+                tasks.add(pool.submit(task));
             }
-
-            ASTParser parser = ASTParser.newParser(AST.JLS8);
-            parser.setUnitName(path);
-            parser.setSource(src.toCharArray());
-            parser.setKind(ASTParser.K_COMPILATION_UNIT);
-            parser.setResolveBindings(false);
-            parser.setEnvironment(null, srcpath, null, true);
-            {
-                Map<String, String> options = JavaCore.getOptions();
-                JavaCore.setComplianceOptions(JavaCore.VERSION_1_7, options);
-                parser.setCompilerOptions(options);
+        }
+        walker.shutdown();
+        // Merge the per-file features in the input order so that
+        // every key keeps the same feature order as a serial run.
+        for (Future<Pass1Task> future : tasks) {
+            Pass1Task task = getResult(future);
+            if (!streaming) {
+                cunits.put(task.path, task.cunit);
             }
-            CompilationUnit cunit = (CompilationUnit)parser.createAST(null);
-            cunits.put(path, cunit);
+            hashes.put(task.path, task.hash);
+            fset.addAll(task.fset);
+        }
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Features:", fset.size(), "keys,",
+                        fset.getFeatCount(), "features,",
+                        fset.getMemorySize(), "bytes");
+        }
+        if (stats != null) {
+            stats.endPass("pass1");
+            stats.put("keys", fset.size());
+            stats.put("features", fset.getFeatCount());
+            stats.put("fset_bytes", fset.getMemorySize());
+        }
+        if (cache != null) {
+            cache.save(new File(cachePath));
+        }
+        if (partialPath != null) {
+            FeatureIndex.save(new File(partialPath), fset);
+            if (pool != null) {
+                pool.shutdown();
+            }
+            if (statsPath != null) {
+                stats.save(new File(statsPath));
+            }
+            return;
+        }
 
-            FeatExtractor extractor = new FeatExtractor(fset);
-            cunit.accept(extractor);
+        DefUseOutput out;
+        if (0 < glossary || dfPath != null) {
+            GlossaryWriter gw = new GlossaryWriter(
+                output, 1 << 20, (0 < glossary)? glossary : 50);
+            if (dfPath != null) {
+                gw.setFrequencyFile(new File(dfPath));
+            }
+            out = gw;
+            binary = true;
+        } else if (phrases) {
+            // Workers pass the blocks to the PhraseWriter in binary.
+            out = new PhraseWriter(output, 1 << 20);
+            binary = true;
+        } else {
+            out = newOutput(output, 1 << 20, binary);
         }
+        out.setFlushBlocks(flushBlocks);
+        out.writeHeader();
 
         Logger.info("Pass 2.");
-        for (String path : cunits.keySet()) {
-            Logger.info("  parsing:", path);
-            CompilationUnit cunit = cunits.get(path);
-            DefUseExtractor extractor = new DefUseExtractor(fset);
-            cunit.accept(extractor);
-
-            out.println("+ "+path);
-            for (DefUse[] defuses : extractor.getResults()) {
-                StringBuffer b = new StringBuffer();
-                for (DefUse du : defuses) {
-                    if (0 < b.length()) {
-                        b.append(" ");
-                    }
-                    b.append(du.toString());
-                }
-                out.println(b.toString());
+        if (stats != null) {
+            stats.startPass();
+        }
+        // Files are written in the order of the inputs.
+        Collection<String> paths = new LinkedHashSet<String>(sources);
+        if (pool == null) {
+            for (String path : paths) {
+                // Sources are released as soon as they are written.
+                Pass2Task task = new Pass2Task(
+                    path, cunits.remove(path), fset, state, hashes.get(path),
+                    binary);
+                task.data = contents.remove(path);
+                task.stats = stats;
+                task.locals = locals;
+                task.run(out);
+            }
+        } else {
+            // Workers wait while the buffer is full.
+            ReorderBuffer buffer = new ReorderBuffer(reorderSize);
+            for (String path : paths) {
+                Pass2Task task = new Pass2Task(
+                    path, cunits.remove(path), fset, state, hashes.get(path),
+                    binary);
+                task.data = contents.remove(path);
+                task.stats = stats;
+                task.locals = locals;
+                buffer.submit(pool, task);
             }
-            out.println();
+            while (true) {
+                byte[] b = buffer.take();
+                if (b == null) break;
+                out.writeBlock(b);
+            }
+            pool.shutdown();
+            if (stats != null) {
+                stats.put("reorder_max_bytes", buffer.getMaxBytes());
+            }
+        }
+        if (state != null) {
+            state.save(new File(statePath), fset);
         }
 
         out.close();
+        if (stats != null) {
+            stats.stopReporter();
+            stats.endPass("pass2");
+            stats.put("output_bytes", out.getByteCount());
+            if (statsPath != null) {
+                stats.save(new File(statsPath));
+            }
+        }
     }
 }
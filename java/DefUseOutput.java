@@ -0,0 +1,204 @@
+//  DefUseOutput.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+//  DefUseOutput
+//  Base of the def-use writers. Each file is written as a block.
+//
+//  Bytes are encoded into its own buffer, which is written out when
+//  it is full, and also after every n blocks if setFlushBlocks(n) is
+//  given. Like PrintStream, an I/O error is kept and reported by
+//  flush() or close() because a sink cannot throw one. Text is
+//  encoded in the platform charset as PrintStream does.
+//
+public abstract class DefUseOutput
+    implements DefUseSink, Closeable, Flushable {
+
+    private OutputStream _out;
+    private byte[] _buf;
+    private int _length = 0;
+    private int _flushBlocks = 0;
+    private int _nblocks = 0;
+    private long _nbytes = 0;
+    private IOException _error = null;
+    private Charset _charset = Charset.defaultCharset();
+    private boolean _utf8 = _charset.name().equals("UTF-8");
+
+    protected DefUseOutput(OutputStream out, int bufsize) {
+        _out = out;
+        _buf = new byte[Math.max(bufsize, 16)];
+    }
+
+    // setFlushBlocks: flushes after every n blocks (0: only when full).
+    public void setFlushBlocks(int n) {
+        _flushBlocks = n;
+    }
+
+    // getByteCount: returns the number of bytes written out.
+    public long getByteCount() {
+        return _nbytes;
+    }
+
+    // writeHeader: writes the beginning of a stream, if any.
+    public void writeHeader() {
+    }
+
+    // writeLines: writes a block whose lines are already formatted.
+    public abstract void writeLines(String path, List<String> lines);
+
+    // writeBlock: writes a block that is already encoded.
+    public void writeBlock(byte[] b) {
+        if (_buf.length - _length < b.length) {
+            flushBuffer();
+        }
+        if (_buf.length < b.length) {
+            try {
+                if (_error == null) {
+                    _out.write(b);
+                    _nbytes += b.length;
+                }
+            } catch (IOException e) {
+                _error = e;
+            }
+        } else {
+            System.arraycopy(b, 0, _buf, _length, b.length);
+            _length += b.length;
+        }
+        endBlock();
+    }
+
+    @Override
+    public void flush()
+        throws IOException {
+        flushBuffer();
+        if (_error == null) {
+            _out.flush();
+        }
+        checkError();
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        flushBuffer();
+        _out.close();
+        checkError();
+    }
+
+    private void checkError()
+        throws IOException {
+        if (_error != null) {
+            IOException e = _error;
+            _error = null;
+            throw e;
+        }
+    }
+
+    protected void endBlock() {
+        _nblocks++;
+        if (0 < _flushBlocks && _flushBlocks <= _nblocks) {
+            _nblocks = 0;
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        if (_length == 0) return;
+        try {
+            if (_error == null) {
+                _out.write(_buf, 0, _length);
+                _nbytes += _length;
+            }
+        } catch (IOException e) {
+            _error = e;
+        }
+        _length = 0;
+    }
+
+    protected void writeByte(int b) {
+        if (_length == _buf.length) {
+            flushBuffer();
+        }
+        _buf[_length++] = (byte)b;
+    }
+
+    protected void writeVarInt(int v) {
+        while ((v & ~0x7f) != 0) {
+            writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    // getUTF8Length: returns the number of bytes written by writeUTF8().
+    protected static int getUTF8Length(String s) {
+        int n = s.length();
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i+1 < n &&
+                       Character.isLowSurrogate(s.charAt(i+1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // writeText: writes a string in the platform charset.
+    protected void writeText(String s) {
+        if (_utf8) {
+            writeUTF8(s);
+        } else {
+            for (byte b : s.getBytes(_charset)) {
+                writeByte(b);
+            }
+        }
+    }
+
+    protected void writeUTF8(char c) {
+        if (c < 0x80) {
+            writeByte(c);
+        } else if (c < 0x800) {
+            writeByte(0xc0 | (c >> 6));
+            writeByte(0x80 | (c & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogates are replaced as String.getBytes() does.
+            writeByte('?');
+        } else {
+            writeByte(0xe0 | (c >> 12));
+            writeByte(0x80 | ((c >> 6) & 0x3f));
+            writeByte(0x80 | (c & 0x3f));
+        }
+    }
+
+    protected void writeUTF8(String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (Character.isHighSurrogate(c) && i+1 < n &&
+                       Character.isLowSurrogate(s.charAt(i+1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                writeByte(0xf0 | (cp >> 18));
+                writeByte(0x80 | ((cp >> 12) & 0x3f));
+                writeByte(0x80 | ((cp >> 6) & 0x3f));
+                writeByte(0x80 | (cp & 0x3f));
+            } else {
+                writeUTF8(c);
+            }
+        }
+    }
+}
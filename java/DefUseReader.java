@@ -0,0 +1,166 @@
+//  DefUseReader.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+//  DefUseReader
+//  Reads the binary format written by DefUseBinaryWriter
+//  and sends the def-uses of each file to a DefUseSink:
+//
+//    DefUseReader reader = new DefUseReader(input);
+//    while (reader.read(sink)) { }
+//
+//  usage:
+//    java getIdents.DefUseReader [-o output] [file ...]
+//    (converts the binary format to the text format)
+//
+public class DefUseReader implements Closeable {
+
+    //  BlockInput
+    //  A ByteArrayInputStream whose array can be replaced.
+    //
+    private static class BlockInput extends ByteArrayInputStream {
+        public BlockInput() {
+            super(new byte[0]);
+        }
+        public void setBlock(byte[] b) {
+            buf = b;
+            pos = 0;
+            count = b.length;
+            mark = 0;
+        }
+    }
+
+    private DataInputStream _in;
+    private BlockInput _block = null;
+    private List<String> _strings = new ArrayList<String>();
+    private List<DefUse> _group = new ArrayList<DefUse>();
+    private byte[] _buf = new byte[256];
+
+    // DefUseReader() reads the blocks given by readBlocks().
+    DefUseReader() {
+        _block = new BlockInput();
+        _in = new DataInputStream(_block);
+    }
+
+    public DefUseReader(InputStream in)
+        throws IOException {
+        _in = new DataInputStream(new BufferedInputStream(in, 65536));
+        if (_in.readInt() != DefUseBinaryWriter.MAGIC) {
+            throw new IOException("Invalid magic");
+        }
+        int version = _in.readUnsignedByte();
+        if (version != DefUseBinaryWriter.VERSION) {
+            throw new IOException("Unsupported version: "+version);
+        }
+    }
+
+    // readBlocks: reads the blocks (without the header) of an array.
+    void readBlocks(byte[] b, DefUseSink sink)
+        throws IOException {
+        _block.setBlock(b);
+        while (read(sink)) { }
+    }
+
+    // read: reads a block, or returns false at the end.
+    public boolean read(DefUseSink sink)
+        throws IOException {
+        int b = _in.read();
+        if (b < 0) return false;
+        _strings.clear();
+        // The first byte of the path is already read.
+        String path = getString(readVarInt(b));
+        sink.startFile(path);
+        while (true) {
+            int op = _in.readUnsignedByte();
+            if (op == DefUseBinaryWriter.END) break;
+            if (op != DefUseBinaryWriter.EMPTY) {
+                while (true) {
+                    char kind = (char)(op & ~DefUseBinaryWriter.MORE);
+                    String name = getString(Utils.readVarInt(_in));
+                    try {
+                        _group.add(DefUse.create(kind, name));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                    if ((op & DefUseBinaryWriter.MORE) == 0) break;
+                    op = _in.readUnsignedByte();
+                }
+            }
+            DefUse[] defuses = new DefUse[_group.size()];
+            _group.toArray(defuses);
+            _group.clear();
+            sink.add(defuses);
+        }
+        sink.endFile(path);
+        return true;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        _in.close();
+    }
+
+    // getString: returns a string of a given index, or reads a new one.
+    private String getString(int i)
+        throws IOException {
+        if (i != 0) {
+            if (_strings.size() < i) {
+                throw new IOException("Invalid string index: "+i);
+            }
+            return _strings.get(i-1);
+        }
+        int length = Utils.readVarInt(_in);
+        if (_buf.length < length) {
+            _buf = new byte[Math.max(length, _buf.length*2)];
+        }
+        _in.readFully(_buf, 0, length);
+        String s = new String(_buf, 0, length, StandardCharsets.UTF_8);
+        _strings.add(s);
+        return s;
+    }
+
+    // readVarInt: reads a varint whose first byte is already read.
+    private int readVarInt(int b)
+        throws IOException {
+        int v = b & 0x7f;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            b = _in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return v;
+    }
+
+    public static void main(String[] args)
+        throws IOException {
+        List<String> files = new ArrayList<String>();
+        OutputStream output = new FileOutputStream(FileDescriptor.out);
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-o")) {
+                output = new FileOutputStream(args[++i]);
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            files.add("-");
+        }
+        DefUseWriter out = new DefUseWriter(output, 1 << 20);
+        for (String path : files) {
+            InputStream input = System.in;
+            if (!path.equals("-")) {
+                input = new FileInputStream(path);
+            }
+            try (DefUseReader reader = new DefUseReader(input)) {
+                while (reader.read(out)) { }
+            }
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,274 @@
+//  DefUseServer.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.eclipse.jdt.core.dom.*;
+import getIdents.DefUseExtractor.Pass1Task;
+import getIdents.DefUseExtractor.Pass2Task;
+
+//  DefUseServer
+//  Stays resident and extracts def-uses on request, so that the JVM
+//  and the parser are started and warmed up only once.
+//
+//  The features of every file requested under a project root are
+//  retained. A request parses only the files that have changed and
+//  reuses the output of the files whose features are unchanged.
+//
+//  Protocol (UTF-8 lines on stdin):
+//    root dir             selects a project root (default: ".").
+//    file path            adds a file to the request.
+//    source path nbytes   adds a file whose content follows in nbytes.
+//    remove path          forgets a file of the root.
+//    reset                forgets all the files of the root.
+//    run                  extracts the def-uses of the request.
+//    quit
+//  Relative paths are resolved against the root. The response to "run"
+//  is the def-use blocks in the text format followed by "= nfiles".
+//  An error is reported as a line "! message".
+//
+//  usage:
+//    java getIdents.DefUseServer [-v] [-j n] [-e charset]
+//
+public class DefUseServer {
+
+    //  Project
+    //  Features retained for a project root.
+    //
+    private static class Project {
+        public SymbolTable symbols = new SymbolTable();
+        // Pass 1 results of the known files, in the order of arrival.
+        public Map<String, Pass1Task> files =
+            new LinkedHashMap<String, Pass1Task>();
+        // Merged features, or null if any file has changed.
+        public FeatureSet fset = null;
+        public DefUseCache state = new DefUseCache();
+    }
+
+    //  Source
+    //  A requested file.
+    //
+    private static class Source {
+        public String path;
+        public byte[] data;
+    }
+
+    private ExecutorService _pool;
+    private DefUseWriter _out;
+    private Map<String, Project> _projects = new HashMap<String, Project>();
+
+    public DefUseServer(ExecutorService pool, DefUseWriter out) {
+        _pool = pool;
+        _out = out;
+    }
+
+    // serve: processes requests until "quit" or the end of input.
+    public void serve(InputStream input)
+        throws IOException {
+        InputStream in = new BufferedInputStream(input);
+        String root = ".";
+        List<Source> sources = new ArrayList<Source>();
+        while (true) {
+            String line = readLine(in);
+            if (line == null || line.equals("quit")) break;
+            String[] args = line.split(" ", 2);
+            String cmd = args[0];
+            String arg = (1 < args.length)? args[1] : null;
+            try {
+                if (cmd.isEmpty()) {
+                    // ignore.
+                } else if (cmd.equals("root") && arg != null) {
+                    root = arg;
+                    sources.clear();
+                } else if (cmd.equals("file") && arg != null) {
+                    Source src = new Source();
+                    src.path = getPath(root, arg);
+                    sources.add(src);
+                } else if (cmd.equals("source") && arg != null) {
+                    int i = arg.lastIndexOf(' ');
+                    if (i < 0) {
+                        throw new IOException("Invalid source: "+arg);
+                    }
+                    Source src = new Source();
+                    src.path = getPath(root, arg.substring(0, i));
+                    src.data = new byte[Integer.parseInt(arg.substring(i+1))];
+                    new DataInputStream(in).readFully(src.data);
+                    sources.add(src);
+                } else if (cmd.equals("remove") && arg != null) {
+                    Project project = getProject(root);
+                    String path = getPath(root, arg);
+                    if (project.files.remove(path) != null) {
+                        project.fset = null;
+                    }
+                    project.state.remove(path);
+                } else if (cmd.equals("reset")) {
+                    _projects.remove(root);
+                } else if (cmd.equals("run")) {
+                    try {
+                        run(getProject(root), sources);
+                    } finally {
+                        sources.clear();
+                    }
+                } else {
+                    throw new IOException("Invalid command: "+line);
+                }
+            } catch (IOException | RuntimeException e) {
+                _out.writeLine("! "+e);
+            }
+            _out.flush();
+        }
+    }
+
+    private void run(Project project, List<Source> sources)
+        throws IOException {
+        Logger.info("Pass 1.");
+        List<Pass1Task> tasks = new ArrayList<Pass1Task>();
+        List<String> hashes = new ArrayList<String>();
+        for (Source src : sources) {
+            if (src.data == null) {
+                src.data = DefUseExtractor.readFile(src.path);
+            }
+            String hash = FeatureCache.getHash(src.data);
+            hashes.add(hash);
+            Pass1Task task = project.files.get(src.path);
+            if (task != null && task.hash.equals(hash)) continue;
+            task = new Pass1Task(src.path, true, true, null, project.symbols);
+            task.data = src.data;
+            tasks.add(task);
+        }
+        if (_pool == null) {
+            for (Pass1Task task : tasks) {
+                task.call();
+            }
+        } else {
+            List<Future<Pass1Task> > futures =
+                new ArrayList<Future<Pass1Task> >();
+            for (Pass1Task task : tasks) {
+                futures.add(_pool.submit(task));
+            }
+            for (Future<Pass1Task> future : futures) {
+                DefUseExtractor.getResult(future);
+            }
+        }
+        for (Pass1Task task : tasks) {
+            project.files.put(task.path, task);
+            project.fset = null;
+        }
+        if (project.fset == null) {
+            // Merge the features in the order the files arrived.
+            project.fset = new FeatureSet(project.symbols);
+            for (Pass1Task task : project.files.values()) {
+                project.fset.addAll(task.fset);
+            }
+        }
+
+        Logger.info("Pass 2.");
+        List<Pass2Task> tasks2 = new ArrayList<Pass2Task>();
+        for (int i = 0; i < sources.size(); i++) {
+            Source src = sources.get(i);
+            Pass1Task task = project.files.get(src.path);
+            Pass2Task task2 = new Pass2Task(
+                src.path, task.cunit, project.fset, project.state,
+                hashes.get(i), false);
+            task2.data = src.data;
+            tasks2.add(task2);
+        }
+        try {
+            if (_pool == null) {
+                for (Pass2Task task2 : tasks2) {
+                    task2.run(_out);
+                }
+            } else {
+                List<Future<byte[]> > futures = new ArrayList<Future<byte[]> >();
+                for (Pass2Task task2 : tasks2) {
+                    futures.add(_pool.submit(task2));
+                }
+                for (Future<byte[]> future : futures) {
+                    _out.writeBlock(DefUseExtractor.getResult(future));
+                }
+            }
+        } finally {
+            // ASTs are not retained between requests.
+            for (Pass1Task task : project.files.values()) {
+                task.cunit = null;
+            }
+            project.state.retain();
+        }
+        _out.writeLine("= "+sources.size());
+    }
+
+    private Project getProject(String root) {
+        Project project = _projects.get(root);
+        if (project == null) {
+            project = new Project();
+            _projects.put(root, project);
+        }
+        return project;
+    }
+
+    private static String getPath(String root, String path) {
+        if (new File(path).isAbsolute()) return path;
+        return new File(root, path).getPath();
+    }
+
+    // readLine: reads a UTF-8 line, or returns null at the end.
+    private static String readLine(InputStream in)
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                if (b.size() == 0) return null;
+                break;
+            }
+            if (c == '\n') break;
+            b.write(c);
+        }
+        String line = new String(b.toByteArray(), StandardCharsets.UTF_8);
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length()-1);
+        }
+        return line;
+    }
+
+    public static void main(String[] args)
+        throws IOException {
+        int nthreads = 1;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-v")) {
+                Logger.LogLevel++;
+            } else if (arg.equals("-j")) {
+                nthreads = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-e")) {
+                DefUseExtractor.setCharset(Charset.forName(args[++i]));
+            } else {
+                System.err.println("Unknown option: "+arg);
+                System.exit(1);
+            }
+        }
+
+        // The workers must not keep the JVM alive when a run fails.
+        ExecutorService pool = null;
+        if (1 < nthreads) {
+            pool = Executors.newFixedThreadPool(nthreads, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "DefUseServer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        DefUseWriter out = new DefUseWriter(
+            new FileOutputStream(FileDescriptor.out), 1 << 20);
+        DefUseServer server = new DefUseServer(pool, out);
+        server.serve(System.in);
+        if (pool != null) {
+            pool.shutdown();
+        }
+        out.close();
+    }
+}
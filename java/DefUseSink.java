@@ -0,0 +1,20 @@
+//  DefUseSink.java
+//
+package getIdents;
+
+//  DefUseSink
+//  Receives the def-uses of each file as they are extracted.
+//  A group of def-uses corresponds to a line of the text output.
+//
+//    startFile(path)
+//    add(group) ...
+//    endFile(path)
+//
+public interface DefUseSink {
+
+    public void startFile(String path);
+
+    public void add(DefUse[] defuses);
+
+    public void endFile(String path);
+}
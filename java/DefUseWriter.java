@@ -0,0 +1,78 @@
+//  DefUseWriter.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  DefUseWriter
+//  Writes def-uses in the text format:
+//
+//    + path
+//    group
+//    ...
+//    (blank line)
+//
+//  Names are encoded in the platform charset, and without creating
+//  intermediate strings if it is UTF-8.
+//
+public class DefUseWriter extends DefUseOutput {
+
+    private static final byte[] NEWLINE =
+        System.lineSeparator().getBytes();
+
+    public DefUseWriter(OutputStream out) {
+        this(out, 65536);
+    }
+
+    public DefUseWriter(OutputStream out, int bufsize) {
+        super(out, bufsize);
+    }
+
+    @Override
+    public void startFile(String path) {
+        writeByte('+');
+        writeByte(' ');
+        writeText(path);
+        writeNewline();
+    }
+
+    @Override
+    public void add(DefUse[] defuses) {
+        for (int i = 0; i < defuses.length; i++) {
+            if (0 < i) {
+                writeByte(' ');
+            }
+            writeByte(defuses[i].getKind());
+            writeText(defuses[i].name);
+        }
+        writeNewline();
+    }
+
+    @Override
+    public void endFile(String path) {
+        writeNewline();
+        endBlock();
+    }
+
+    @Override
+    public void writeLines(String path, List<String> lines) {
+        startFile(path);
+        for (String line : lines) {
+            writeText(line);
+            writeNewline();
+        }
+        endFile(path);
+    }
+
+    // writeLine: writes a line outside of any block.
+    public void writeLine(String line) {
+        writeText(line);
+        writeNewline();
+    }
+
+    private void writeNewline() {
+        for (byte b : NEWLINE) {
+            writeByte(b);
+        }
+    }
+}
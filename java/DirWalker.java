@@ -0,0 +1,159 @@
+//  DirWalker.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//  DirWalker
+//  Walks directory trees and visits the files that pass the filters.
+//
+//  Directories are listed in parallel ahead of the visitor, but files
+//  are always visited in the same depth-first order (sorted by name),
+//  so that the output does not depend on the timing.
+//  A glob without "/" matches a file or directory name anywhere
+//  (e.g. "generated"), and others match the path relative to the root
+//  (e.g. "src/test/**"). Excluded directories are not entered.
+//  Symbolic links to directories are not followed.
+//
+class DirWalker {
+
+    //  Visitor
+    //
+    public interface Visitor {
+        public void visit(String path) throws IOException;
+    }
+
+    //  Listing
+    //  Files and subdirectories of a directory.
+    //
+    private static class Listing {
+        public List<String> files = new ArrayList<String>();
+        public List<Future<Listing> > dirs = new ArrayList<Future<Listing> >();
+    }
+
+    private ExecutorService _pool;
+    private List<String> _includes = new ArrayList<String>();
+    private List<PathMatcher> _includeMatchers = new ArrayList<PathMatcher>();
+    private List<String> _excludes = new ArrayList<String>();
+    private List<PathMatcher> _excludeMatchers = new ArrayList<PathMatcher>();
+    private long _maxSize = -1;
+
+    public DirWalker(int nthreads) {
+        _pool = Executors.newFixedThreadPool(nthreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "DirWalker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    // addInclude: adds a glob of the files to visit (default: "*.java").
+    public void addInclude(String glob) {
+        _includes.add(glob);
+        _includeMatchers.add(getMatcher(glob));
+    }
+
+    // addExclude: adds a glob of the files or directories to skip.
+    public void addExclude(String glob) {
+        _excludes.add(glob);
+        _excludeMatchers.add(getMatcher(glob));
+    }
+
+    // setMaxSize: skips files larger than the size (-1: no limit).
+    public void setMaxSize(long size) {
+        _maxSize = size;
+    }
+
+    public void shutdown() {
+        _pool.shutdownNow();
+    }
+
+    // walk: visits the files under a directory.
+    public void walk(String root, Visitor visitor)
+        throws IOException {
+        Path base = Paths.get(root);
+        walk(submit(base, base), visitor);
+    }
+
+    private void walk(Future<Listing> future, Visitor visitor)
+        throws IOException {
+        Listing listing = DefUseExtractor.getResult(future);
+        for (String path : listing.files) {
+            visitor.visit(path);
+        }
+        for (Future<Listing> dir : listing.dirs) {
+            walk(dir, visitor);
+        }
+    }
+
+    private Future<Listing> submit(final Path base, final Path dir) {
+        return _pool.submit(new Callable<Listing>() {
+                @Override
+                public Listing call() throws IOException {
+                    return list(base, dir);
+                }
+            });
+    }
+
+    // list: lists a directory and submits its subdirectories.
+    private Listing list(Path base, Path dir)
+        throws IOException {
+        List<Path> entries = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                entries.add(path);
+            }
+        }
+        Collections.sort(entries);
+        Listing listing = new Listing();
+        for (Path path : entries) {
+            BasicFileAttributes attrs = Files.readAttributes(
+                path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attrs.isSymbolicLink()) {
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attrs.isDirectory()) continue;
+            }
+            Path rel = base.relativize(path);
+            if (matches(_excludes, _excludeMatchers, rel)) continue;
+            if (attrs.isDirectory()) {
+                listing.dirs.add(submit(base, path));
+            } else if (attrs.isRegularFile()) {
+                if (0 <= _maxSize && _maxSize < attrs.size()) {
+                    if (Logger.isInfoEnabled()) {
+                        Logger.info("  skipping:", path);
+                    }
+                    continue;
+                }
+                if (_includes.isEmpty()) {
+                    if (!path.getFileName().toString().endsWith(".java")) continue;
+                } else {
+                    if (!matches(_includes, _includeMatchers, rel)) continue;
+                }
+                listing.files.add(path.toString());
+            }
+        }
+        return listing;
+    }
+
+    private static boolean matches(
+        List<String> globs, List<PathMatcher> matchers, Path rel) {
+        for (int i = 0; i < globs.size(); i++) {
+            Path path = (globs.get(i).indexOf('/') < 0)? rel.getFileName() : rel;
+            if (matchers.get(i).matches(path)) return true;
+        }
+        return false;
+    }
+
+    private static PathMatcher getMatcher(String glob) {
+        return FileSystems.getDefault().getPathMatcher("glob:"+glob);
+    }
+}
@@ -0,0 +1,111 @@
+//  FeatExtractor.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import org.eclipse.jdt.core.*;
+import org.eclipse.jdt.core.dom.*;
+
+//  FeatExtractor
+//  Collects the features of a file. With useLocals(), the types of
+//  local variables are not recorded because they are resolved
+//  within the file in Pass 2.
+//
+class FeatExtractor extends NamespaceWalker {
+
+    private FeatureSet _fset;
+
+    public FeatExtractor(FeatureSet fset) {
+        super(fset.getSymbols());
+        _fset = fset;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(EnumDeclaration node) {
+        super.visit(node);
+        String typename = getCurrent().getName();
+        for (EnumConstantDeclaration frag :
+                 (List<EnumConstantDeclaration>)node.enumConstants()) {
+            String name = frag.getName().getIdentifier();
+            long key = getKey('v', getId(getCurrent()), name);
+            fadd(key, FeatureSet.TYPE, typename);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void endVisit(MethodDeclaration node) {
+        Namespace parent = findParent("M");
+        if (parent == null) return;
+        long key = getKey(
+            'm', getLocalId(parent.getParent()),
+            parent.getName().substring(1));
+        for (SingleVariableDeclaration decl :
+                 (List<SingleVariableDeclaration>)node.parameters()) {
+            String name = decl.getName().getIdentifier();
+            fadd(key, FeatureSet.VAR, name);
+        }
+        String typename = Utils.typeName(node.getReturnType2());
+        if (typename != null) {
+            fadd(key, FeatureSet.TYPE, typename);
+        }
+        super.endVisit(node);
+    }
+
+    @Override
+    public boolean visit(SingleVariableDeclaration node) {
+        if (getLocals() != null) return true;
+        String name = node.getName().getIdentifier();
+        long key = getKey('v', getId(getCurrent()), name);
+        String typename = Utils.typeName(node.getType());
+        if (typename != null) {
+            fadd(key, FeatureSet.TYPE, typename);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(VariableDeclarationStatement node) {
+        String typename = Utils.typeName(node.getType());
+        if (typename != null && getLocals() == null) {
+            for (VariableDeclarationFragment frag :
+                     (List<VariableDeclarationFragment>)node.fragments()) {
+                String name = frag.getName().getIdentifier();
+                long key = getKey('v', getId(getCurrent()), name);
+                fadd(key, FeatureSet.TYPE, typename);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(FieldDeclaration node) {
+        Namespace parent = findParent("T");
+        if (parent == null) return false;
+        String typename = Utils.typeName(node.getType());
+        if (typename != null) {
+            for (VariableDeclarationFragment frag :
+                     (List<VariableDeclarationFragment>)node.fragments()) {
+                String name = frag.getName().getIdentifier();
+                long key = getKey('f', getLocalId(parent), name);
+                fadd(key, FeatureSet.TYPE, typename);
+            }
+        }
+        return true;
+    }
+
+    private long getKey(char kind, int scope, String name) {
+        return FeatureSet.getKey(kind, scope, getSymbols().intern(name));
+    }
+
+    private void fadd(long key, char kind, String name) {
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("fadd:", _fset.getKeyName(key), kind+name);
+        }
+        _fset.add(key, kind, getSymbols().intern(name));
+    }
+}
@@ -0,0 +1,106 @@
+//  FeatureCache.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.security.*;
+
+//  FeatureCache
+//  Keeps the features of each file keyed by the hash of its content.
+//
+//  File format:
+//    int magic, int version
+//    varint nentries, { hash, varint nkeys,
+//                       { key, varint nfeats, { byte kind, name } } }
+//  Strings are written with a StringTable.
+//
+public class FeatureCache {
+
+    public static final int MAGIC = 0x47494643; // "GIFC"
+    public static final int VERSION = 2;
+
+    // Entries loaded from the disk.
+    private Map<String, FeatureSet> _entries =
+        new HashMap<String, FeatureSet>();
+    // Entries used in this run, which are saved.
+    private Map<String, FeatureSet> _used =
+        new ConcurrentHashMap<String, FeatureSet>();
+
+    public static String getHash(byte[] data) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(data);
+            StringBuilder b = new StringBuilder();
+            for (byte x : digest) {
+                b.append(String.format("%02x", x & 0xff));
+            }
+            return b.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public FeatureSet get(String hash) {
+        FeatureSet fset = _entries.get(hash);
+        if (fset != null) {
+            _used.put(hash, fset);
+        }
+        return fset;
+    }
+
+    public void put(String hash, FeatureSet fset) {
+        _used.put(hash, fset);
+    }
+
+    public int size() {
+        return _used.size();
+    }
+
+    public static FeatureCache load(File file, SymbolTable symbols)
+        throws IOException {
+        FeatureCache cache = new FeatureCache();
+        if (!file.exists()) return cache;
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Logger.info("Ignoring incompatible cache:", file);
+                return cache;
+            }
+            StringTable strings = new StringTable();
+            int nentries = Utils.readVarInt(in);
+            for (int i = 0; i < nentries; i++) {
+                String hash = strings.read(in);
+                FeatureSet fset = new FeatureSet(symbols);
+                fset.read(in, strings);
+                cache._entries.put(hash, fset);
+            }
+        }
+        Logger.info("Loaded cache:", file, cache._entries.size());
+        return cache;
+    }
+
+    public void save(File file)
+        throws IOException {
+        // Write to a temporary file and replace the old one.
+        File tmp = new File(file.getPath()+".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            StringTable strings = new StringTable();
+            Utils.writeVarInt(out, _used.size());
+            for (Map.Entry<String, FeatureSet> e : _used.entrySet()) {
+                strings.write(out, e.getKey());
+                e.getValue().write(out, strings);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot write cache: "+file);
+            }
+        }
+        Logger.info("Saved cache:", file, _used.size());
+    }
+}
@@ -0,0 +1,103 @@
+//  FeatureIndex.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  FeatureIndex
+//  Saves and loads the features of a whole run, so that Pass 1 and
+//  Pass 2 can be run in separate processes over shards of the inputs:
+//
+//    getDefUses.sh -k 0/2 -p part0.idx -i files.lst
+//    getDefUses.sh -k 1/2 -p part1.idx -i files.lst
+//    java getIdents.FeatureIndex -o all.idx part0.idx part1.idx
+//    getDefUses.sh -k 0/2 -x all.idx -i files.lst > out0
+//    getDefUses.sh -k 1/2 -x all.idx -i files.lst > out1
+//
+//  With -f, the merged index is written frozen (see FrozenFeatureSet),
+//  so that it is memory-mapped and shared by the Pass 2 processes.
+//
+//  Partial indexes are merged in the given order. When the shards are
+//  merged in order, every key has the same features in the same order
+//  as an unsharded run.
+//
+//  File format:
+//    int magic, int version, features (see FeatureSet.write)
+//  Strings are written with a StringTable.
+//
+//  usage:
+//    java getIdents.FeatureIndex [-v] [-f] -o output partial ...
+//
+public class FeatureIndex {
+
+    public static final int MAGIC = 0x47494658; // "GIFX"
+    public static final int VERSION = 1;
+
+    public static void save(File file, FeatureSet fset)
+        throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            fset.write(out, new StringTable());
+        }
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Saved index:", file, fset.size());
+        }
+    }
+
+    // load: appends the features of an index to a FeatureSet.
+    public static void load(File file, FeatureSet fset)
+        throws IOException {
+        if (FrozenFeatureSet.isFrozen(file)) {
+            fset.addAll(new FrozenFeatureSet(fset.getSymbols(), file));
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid index: "+file);
+            }
+            fset.read(in, new StringTable());
+        }
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Loaded index:", file, fset.size());
+        }
+    }
+
+    public static void main(String[] args)
+        throws IOException {
+        String output = null;
+        boolean frozen = false;
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-v")) {
+                Logger.LogLevel++;
+            } else if (arg.equals("-f")) {
+                frozen = true;
+            } else if (arg.equals("-o")) {
+                output = args[++i];
+            } else if (arg.startsWith("-")) {
+                System.err.println("Unknown option: "+arg);
+                System.exit(1);
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (output == null) {
+            System.err.println("usage: FeatureIndex [-v] [-f] -o output partial ...");
+            System.exit(100);
+        }
+
+        FeatureSet fset = new FeatureSet(new SymbolTable());
+        for (String path : inputs) {
+            load(new File(path), fset);
+        }
+        if (frozen) {
+            FrozenFeatureSet.save(new File(output), fset);
+        } else {
+            save(new File(output), fset);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+//  FeatureSet.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  FeatureSet
+//  A key is a tuple of (kind, namespace id, identifier id):
+//    v: variable in a namespace, i.e. "v"+namespace+"."+name
+//    f: field of a type, i.e. "f"+type+"."+name
+//    m: method of a type, i.e. "m"+type+".M"+name
+//  A feature is a pair of (kind, name id):
+//    T: type name
+//    V: variable name
+//
+//  Keys are kept in an open addressing table and the features of
+//  each key are linked in flat arrays. Features are visited in place:
+//
+//    for (int i = fset.first(key); 0 <= i; i = fset.next(i)) {
+//        fset.getFeatKind(i); fset.getFeatName(i);
+//    }
+//
+class FeatureSet {
+
+    public static final char TYPE = 'T';
+    public static final char VAR = 'V';
+
+    private SymbolTable _symbols;
+
+    // Open addressing table. Each slot has the first and last features.
+    private long[] _keys;
+    private int[] _first;
+    private int[] _last;
+    private int _nkeys = 0;
+
+    // Features.
+    private byte[] _kinds;
+    private int[] _names;
+    private int[] _next;
+    private int _nfeats = 0;
+
+    public FeatureSet(SymbolTable symbols) {
+        this(symbols, 16);
+    }
+
+    public FeatureSet(SymbolTable symbols, int capacity) {
+        _symbols = symbols;
+        int n = 16;
+        while (n < capacity*2) {
+            n *= 2;
+        }
+        allocKeys(n);
+        allocFeats(Math.max(capacity, 16));
+    }
+
+    public SymbolTable getSymbols() {
+        return _symbols;
+    }
+
+    // findName: returns the id of a name for looking up keys,
+    //   or -1 if no key can have it. Nothing is interned.
+    public int findName(String name) {
+        return _symbols.find(name);
+    }
+
+    // findScope: returns the id of a namespace for looking up keys,
+    //   or -1 if no key can have it. Nothing is interned.
+    public int findScope(int parent, int name) {
+        return _symbols.findScope(parent, name);
+    }
+
+    // Ids are packed in 28 bits each.
+    public static final int MAX_ID = (1 << 28) - 1;
+
+    // getKey: returns a key, or -1 if any of the ids is invalid.
+    public static long getKey(char kind, int scope, int ident) {
+        if (scope < 0 || ident < 0) return -1;
+        if (MAX_ID < scope || MAX_ID < ident) {
+            throw new IllegalArgumentException(
+                "Too many symbols: scope="+scope+", ident="+ident);
+        }
+        return (((long)kind) << 56) | (((long)scope) << 28) | ident;
+    }
+    public static char getKind(long key) {
+        return (char)(key >>> 56);
+    }
+    public static int getScope(long key) {
+        return (int)((key >>> 28) & MAX_ID);
+    }
+    public static int getIdent(long key) {
+        return (int)(key & MAX_ID);
+    }
+
+    public String getKeyName(long key) {
+        if (key < 0) return null;
+        char kind = getKind(key);
+        String scope = _symbols.getScopeName(getScope(key));
+        String ident = _symbols.getName(getIdent(key));
+        if (kind == 'm') {
+            return kind+scope+".M"+ident;
+        } else {
+            return kind+scope+"."+ident;
+        }
+    }
+
+    // size: returns the number of keys.
+    public int size() {
+        return _nkeys;
+    }
+
+    public int getFeatCount() {
+        return _nfeats;
+    }
+
+    // getMemorySize: returns the approximate number of bytes used.
+    public long getMemorySize() {
+        return (_keys.length * (8L+4+4) +
+                _kinds.length * (1L+4+4));
+    }
+
+    public void add(long k, char kind, int name) {
+        if (_nfeats == _kinds.length) {
+            allocFeats(_kinds.length*2);
+        }
+        int i = _nfeats++;
+        _kinds[i] = (byte)kind;
+        _names[i] = name;
+        _next[i] = -1;
+        int slot = findSlot(k);
+        if (_keys[slot] == k) {
+            _next[_last[slot]] = i;
+            _last[slot] = i;
+        } else {
+            _keys[slot] = k;
+            _first[slot] = i;
+            _last[slot] = i;
+            _nkeys++;
+            if (_keys.length < _nkeys*2) {
+                allocKeys(_keys.length*2);
+            }
+        }
+    }
+
+    // first: returns the first feature of a key, or -1.
+    public int first(long k) {
+        if (k < 0) return -1;
+        int slot = findSlot(k);
+        return (_keys[slot] == k)? _first[slot] : -1;
+    }
+
+    // next: returns the next feature, or -1.
+    public int next(int i) {
+        return _next[i];
+    }
+
+    public char getFeatKind(int i) {
+        return (char)_kinds[i];
+    }
+
+    public int getFeatName(int i) {
+        return _names[i];
+    }
+
+    public long[] getKeys() {
+        long[] keys = new long[_nkeys];
+        int j = 0;
+        for (long k : _keys) {
+            if (0 <= k) {
+                keys[j++] = k;
+            }
+        }
+        return keys;
+    }
+
+    // addAll: appends all the features of another set.
+    public void addAll(FeatureSet fset) {
+        for (long k : fset.getKeys()) {
+            for (int i = fset.first(k); 0 <= i; i = fset.next(i)) {
+                add(k, fset.getFeatKind(i), fset.getFeatName(i));
+            }
+        }
+    }
+
+    // clear: removes all the keys and releases the memory.
+    protected void clear() {
+        _keys = null;
+        _kinds = null;
+        _nkeys = 0;
+        _nfeats = 0;
+        allocKeys(32);
+        allocFeats(16);
+    }
+
+    public void writeKey(DataOutput out, StringTable strings, long key)
+        throws IOException {
+        out.writeByte(getKind(key));
+        strings.writeScope(out, _symbols, getScope(key));
+        strings.write(out, _symbols.getName(getIdent(key)));
+    }
+
+    public long readKey(DataInput in, StringTable strings)
+        throws IOException {
+        char kind = (char)in.readUnsignedByte();
+        int scope = strings.readScope(in, _symbols);
+        int ident = _symbols.intern(strings.read(in));
+        return getKey(kind, scope, ident);
+    }
+
+    // write: writes the keys and their features.
+    //   varint nkeys, { key, varint nfeats, { byte kind, name } }
+    public void write(DataOutput out, StringTable strings)
+        throws IOException {
+        long[] keys = getKeys();
+        Utils.writeVarInt(out, keys.length);
+        for (long k : keys) {
+            writeKey(out, strings, k);
+            int nfeats = 0;
+            for (int i = first(k); 0 <= i; i = next(i)) {
+                nfeats++;
+            }
+            Utils.writeVarInt(out, nfeats);
+            for (int i = first(k); 0 <= i; i = next(i)) {
+                out.writeByte(getFeatKind(i));
+                strings.write(out, _symbols.getName(getFeatName(i)));
+            }
+        }
+    }
+
+    // read: appends the keys and features written by write().
+    public void read(DataInput in, StringTable strings)
+        throws IOException {
+        int nkeys = Utils.readVarInt(in);
+        for (int j = 0; j < nkeys; j++) {
+            long key = readKey(in, strings);
+            int nfeats = Utils.readVarInt(in);
+            for (int k = 0; k < nfeats; k++) {
+                char kind = (char)in.readUnsignedByte();
+                add(key, kind, _symbols.intern(strings.read(in)));
+            }
+        }
+    }
+
+    private int findSlot(long k) {
+        int mask = _keys.length-1;
+        int slot = hash(k) & mask;
+        while (true) {
+            long k1 = _keys[slot];
+            if (k1 == k || k1 < 0) return slot;
+            slot = (slot+1) & mask;
+        }
+    }
+
+    private static int hash(long k) {
+        k *= 0x9e3779b97f4a7c15L;
+        return (int)(k ^ (k >>> 32));
+    }
+
+    private void allocKeys(int n) {
+        long[] keys = _keys;
+        int[] first = _first;
+        int[] last = _last;
+        _keys = new long[n];
+        _first = new int[n];
+        _last = new int[n];
+        Arrays.fill(_keys, -1);
+        if (keys != null) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                long k = keys[slot];
+                if (k < 0) continue;
+                int slot1 = findSlot(k);
+                _keys[slot1] = k;
+                _first[slot1] = first[slot];
+                _last[slot1] = last[slot];
+            }
+        }
+    }
+
+    private void allocFeats(int n) {
+        if (_kinds == null) {
+            _kinds = new byte[n];
+            _names = new int[n];
+            _next = new int[n];
+        } else {
+            _kinds = Arrays.copyOf(_kinds, n);
+            _names = Arrays.copyOf(_names, n);
+            _next = Arrays.copyOf(_next, n);
+        }
+    }
+}
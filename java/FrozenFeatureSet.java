@@ -0,0 +1,469 @@
+//  FrozenFeatureSet.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//  FrozenFeatureSet
+//  An immutable FeatureSet that is memory-mapped from a file, so that
+//  it is opened instantly and its pages are shared by the processes
+//  that map the same file.
+//
+//  The file has its own ids of names and namespaces. Ids of the
+//  SymbolTable are translated to them when a key is looked up, and
+//  the names of features are interned when they are read. Translated
+//  ids are memoized.
+//
+//  File format:
+//    int magic, int version,
+//    int nnames, int nscopes, int nkeys, int nfeats, int tablesize,
+//    int nameOffsets[nnames+1],     (into the arena)
+//    int nameTable[tablesize],      (open addressing, name id+1 or 0)
+//    int scopeParents[nscopes], int scopeNames[nscopes],
+//    long scopeKeys[nscopes],       (sorted, (parent+1) << 32 | name)
+//    int scopeIds[nscopes],         (of each scopeKey)
+//    long keys[nkeys],              (sorted)
+//    int starts[nkeys],
+//    int names[nfeats],
+//    byte kinds[nfeats],            (0x80 for the last feature of a key)
+//    byte arena[]                   (names in UTF-8)
+//
+class FrozenFeatureSet extends FeatureSet {
+
+    public static final int MAGIC = 0x4749465a; // "GIFZ"
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int LAST = 0x80;
+
+    private ByteBuffer _buf;
+    private int _nnames;
+    private int _nscopes;
+    private int _nkeys;
+    private int _nfeats;
+    private int _tableSize;
+
+    private int _nameOffsetsOff;
+    private int _nameTableOff;
+    private int _scopeParentsOff;
+    private int _scopeNamesOff;
+    private int _scopeKeysOff;
+    private int _scopeIdsOff;
+    private int _keysOff;
+    private int _startsOff;
+    private int _namesOff;
+    private int _kindsOff;
+    private int _arenaOff;
+
+    // Memoized ids: SymbolTable -> file.
+    private Map<Integer, Integer> _fileNames =
+        new ConcurrentHashMap<Integer, Integer>();
+    private Map<Integer, Integer> _fileScopes =
+        new ConcurrentHashMap<Integer, Integer>();
+    // Memoized ids: file -> SymbolTable.
+    private Map<Integer, Integer> _names =
+        new ConcurrentHashMap<Integer, Integer>();
+
+    public FrozenFeatureSet(SymbolTable symbols, File file)
+        throws IOException {
+        super(symbols);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            _buf = raf.getChannel().map(
+                FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        if (_buf.getInt(0) != MAGIC || _buf.getInt(4) != VERSION) {
+            throw new IOException("Invalid index: "+file);
+        }
+        _nnames = _buf.getInt(8);
+        _nscopes = _buf.getInt(12);
+        _nkeys = _buf.getInt(16);
+        _nfeats = _buf.getInt(20);
+        _tableSize = _buf.getInt(24);
+        _nameOffsetsOff = 28;
+        _nameTableOff = _nameOffsetsOff + (_nnames+1)*4;
+        _scopeParentsOff = _nameTableOff + _tableSize*4;
+        _scopeNamesOff = _scopeParentsOff + _nscopes*4;
+        _scopeKeysOff = _scopeNamesOff + _nscopes*4;
+        _scopeIdsOff = _scopeKeysOff + _nscopes*8;
+        _keysOff = _scopeIdsOff + _nscopes*4;
+        _startsOff = _keysOff + _nkeys*8;
+        _namesOff = _startsOff + _nkeys*4;
+        _kindsOff = _namesOff + _nfeats*4;
+        _arenaOff = _kindsOff + _nfeats;
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Mapped index:", file, _nkeys);
+        }
+    }
+
+    // isFrozen: returns true if a file is a frozen index.
+    public static boolean isFrozen(File file)
+        throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new FileInputStream(file))) {
+            return (in.readInt() == MAGIC);
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int size() {
+        return _nkeys;
+    }
+
+    @Override
+    public int getFeatCount() {
+        return _nfeats;
+    }
+
+    @Override
+    public long getMemorySize() {
+        // The features are not in the heap.
+        return 0;
+    }
+
+    @Override
+    public void add(long k, char kind, int name) {
+        throw new UnsupportedOperationException("Frozen FeatureSet");
+    }
+
+    @Override
+    public int first(long k) {
+        if (k < 0) return -1;
+        int scope = getFileScope(getScope(k));
+        if (scope < 0) return -1;
+        int ident = getFileName(getIdent(k));
+        if (ident < 0) return -1;
+        long k1 = getKey(getKind(k), scope, ident);
+        int j = search(_keysOff, _nkeys, k1);
+        return (j < 0)? -1 : _buf.getInt(_startsOff + j*4);
+    }
+
+    @Override
+    public int next(int i) {
+        return ((_buf.get(_kindsOff + i) & LAST) != 0)? -1 : i+1;
+    }
+
+    @Override
+    public char getFeatKind(int i) {
+        return (char)(_buf.get(_kindsOff + i) & ~LAST & 0xff);
+    }
+
+    @Override
+    public int getFeatName(int i) {
+        return getName(_buf.getInt(_namesOff + i*4));
+    }
+
+    @Override
+    public long[] getKeys() {
+        long[] keys = new long[_nkeys];
+        for (int j = 0; j < _nkeys; j++) {
+            long k = _buf.getLong(_keysOff + j*8);
+            keys[j] = getKey(getKind(k), getScopeOf(getScope(k)),
+                             getName(getIdent(k)));
+        }
+        return keys;
+    }
+
+    // findName: interns a name only if the file has it.
+    @Override
+    public int findName(String name) {
+        if (name == null) return -1;
+        int i = findFileName(name.getBytes(UTF8));
+        if (i < 0) return -1;
+        int ident = getName(i);
+        _fileNames.put(ident, i);
+        return ident;
+    }
+
+    // findScope: interns a namespace only if the file has it.
+    @Override
+    public int findScope(int parent, int name) {
+        if (name < 0) return -1;
+        int parent1 = (parent < 0)? -1 : getFileScope(parent);
+        if (0 <= parent && parent1 < 0) return -1;
+        int name1 = getFileName(name);
+        if (name1 < 0) return -1;
+        int j = search(_scopeKeysOff, _nscopes, getScopeKey(parent1, name1));
+        if (j < 0) return -1;
+        int scope = getSymbols().getScope(parent, name);
+        _fileScopes.put(scope, _buf.getInt(_scopeIdsOff + j*4));
+        return scope;
+    }
+
+    // getFileName: translates a name id into the file, or -1.
+    private int getFileName(int ident) {
+        Integer id = _fileNames.get(ident);
+        if (id == null) {
+            id = findFileName(getSymbols().getName(ident).getBytes(UTF8));
+            _fileNames.put(ident, id);
+        }
+        return id;
+    }
+
+    // findFileName: returns the name id of the file, or -1.
+    private int findFileName(byte[] b) {
+        int mask = _tableSize-1;
+        int slot = hash(b) & mask;
+        while (true) {
+            int x = _buf.getInt(_nameTableOff + slot*4);
+            if (x == 0) return -1;
+            if (equalsName(x-1, b)) return x-1;
+            slot = (slot+1) & mask;
+        }
+    }
+
+    // getFileScope: translates a namespace id into the file, or -1.
+    private int getFileScope(int scope) {
+        Integer id = _fileScopes.get(scope);
+        if (id == null) {
+            id = -1;
+            SymbolTable symbols = getSymbols();
+            int parent = symbols.getScopeParent(scope);
+            int parent1 = (parent < 0)? -1 : getFileScope(parent);
+            int name = getFileName(symbols.getScopeIdent(scope));
+            if ((parent < 0 || 0 <= parent1) && 0 <= name) {
+                int j = search(_scopeKeysOff, _nscopes,
+                               getScopeKey(parent1, name));
+                if (0 <= j) {
+                    id = _buf.getInt(_scopeIdsOff + j*4);
+                }
+            }
+            _fileScopes.put(scope, id);
+        }
+        return id;
+    }
+
+    // getName: translates a name id of the file.
+    private int getName(int i) {
+        Integer id = _names.get(i);
+        if (id == null) {
+            int start = _buf.getInt(_nameOffsetsOff + i*4);
+            int end = _buf.getInt(_nameOffsetsOff + i*4 + 4);
+            byte[] b = new byte[end-start];
+            for (int j = 0; j < b.length; j++) {
+                b[j] = _buf.get(_arenaOff + start + j);
+            }
+            id = getSymbols().intern(new String(b, UTF8));
+            _names.put(i, id);
+        }
+        return id;
+    }
+
+    // getScopeOf: translates a namespace id of the file.
+    private int getScopeOf(int i) {
+        int parent = _buf.getInt(_scopeParentsOff + i*4);
+        int name = getName(_buf.getInt(_scopeNamesOff + i*4));
+        return getSymbols().getScope(
+            (parent < 0)? -1 : getScopeOf(parent), name);
+    }
+
+    private boolean equalsName(int i, byte[] b) {
+        int start = _buf.getInt(_nameOffsetsOff + i*4);
+        int end = _buf.getInt(_nameOffsetsOff + i*4 + 4);
+        if (end-start != b.length) return false;
+        for (int j = 0; j < b.length; j++) {
+            if (_buf.get(_arenaOff + start + j) != b[j]) return false;
+        }
+        return true;
+    }
+
+    // search: returns the index of a value in a sorted array, or -1.
+    private int search(int off, int n, long k) {
+        int lo = 0;
+        int hi = n-1;
+        while (lo <= hi) {
+            int mid = (lo+hi) >>> 1;
+            long k1 = _buf.getLong(off + mid*8);
+            if (k1 < k) {
+                lo = mid+1;
+            } else if (k < k1) {
+                hi = mid-1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(byte[] b) {
+        int h = 0;
+        for (byte x : b) {
+            h = h*31 + (x & 0xff);
+        }
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    // save: writes a FeatureSet as a frozen index.
+    public static void save(File file, FeatureSet fset)
+        throws IOException {
+        SymbolTable symbols = fset.getSymbols();
+        long[] keys = fset.getKeys();
+        // Number the names and namespaces in the file.
+        IntMap nameIds = new IntMap();
+        List<byte[]> names = new ArrayList<byte[]>();
+        IntMap scopeIds = new IntMap();
+        int[] scopeParents = new int[16];
+        int[] scopeNames = new int[16];
+        int nscopes = 0;
+        long[] fileKeys = new long[keys.length];
+        int nfeats = 0;
+        int[] path = new int[16];
+        for (int j = 0; j < keys.length; j++) {
+            long k = keys[j];
+            // Add the namespace and its parents.
+            int depth = 0;
+            for (int s = getScope(k); 0 <= s && scopeIds.get(s) < 0;
+                 s = symbols.getScopeParent(s)) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth*2);
+                }
+                path[depth++] = s;
+            }
+            while (0 < depth) {
+                int s = path[--depth];
+                int parent = symbols.getScopeParent(s);
+                if (nscopes == scopeParents.length) {
+                    scopeParents = Arrays.copyOf(scopeParents, nscopes*2);
+                    scopeNames = Arrays.copyOf(scopeNames, nscopes*2);
+                }
+                scopeParents[nscopes] = (parent < 0)? -1 : scopeIds.get(parent);
+                scopeNames[nscopes] = addName(
+                    nameIds, names, symbols, symbols.getScopeIdent(s));
+                scopeIds.put(s, nscopes++);
+            }
+            fileKeys[j] = getKey(
+                getKind(k), scopeIds.get(getScope(k)),
+                addName(nameIds, names, symbols, getIdent(k)));
+            for (int i = fset.first(k); 0 <= i; i = fset.next(i)) {
+                addName(nameIds, names, symbols, fset.getFeatName(i));
+                nfeats++;
+            }
+        }
+        int nnames = names.size();
+        int tableSize = 16;
+        while (tableSize < nnames*2) {
+            tableSize *= 2;
+        }
+        int[] table = new int[tableSize];
+        int[] nameOffsets = new int[nnames+1];
+        for (int i = 0; i < nnames; i++) {
+            byte[] b = names.get(i);
+            nameOffsets[i+1] = nameOffsets[i] + b.length;
+            int slot = hash(b) & (tableSize-1);
+            while (table[slot] != 0) {
+                slot = (slot+1) & (tableSize-1);
+            }
+            table[slot] = i+1;
+        }
+        long size = (28L + (nnames+1)*4L + tableSize*4L + nscopes*20L +
+                     keys.length*12L + nfeats*5L + nameOffsets[nnames]);
+        if (Integer.MAX_VALUE < size) {
+            throw new IOException("Index too large: "+size);
+        }
+        Integer[] scopeOrder = sortOrder(nscopes, scopeParents, scopeNames);
+        Integer[] keyOrder = sortOrder(fileKeys);
+
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nnames);
+            out.writeInt(nscopes);
+            out.writeInt(keys.length);
+            out.writeInt(nfeats);
+            out.writeInt(tableSize);
+            for (int x : nameOffsets) {
+                out.writeInt(x);
+            }
+            for (int x : table) {
+                out.writeInt(x);
+            }
+            for (int i = 0; i < nscopes; i++) {
+                out.writeInt(scopeParents[i]);
+            }
+            for (int i = 0; i < nscopes; i++) {
+                out.writeInt(scopeNames[i]);
+            }
+            for (int i : scopeOrder) {
+                out.writeLong(getScopeKey(scopeParents[i], scopeNames[i]));
+            }
+            for (int i : scopeOrder) {
+                out.writeInt(i);
+            }
+            for (int j : keyOrder) {
+                out.writeLong(fileKeys[j]);
+            }
+            int start = 0;
+            for (int j : keyOrder) {
+                out.writeInt(start);
+                for (int i = fset.first(keys[j]); 0 <= i; i = fset.next(i)) {
+                    start++;
+                }
+            }
+            for (int j : keyOrder) {
+                for (int i = fset.first(keys[j]); 0 <= i; i = fset.next(i)) {
+                    out.writeInt(nameIds.get(fset.getFeatName(i)));
+                }
+            }
+            for (int j : keyOrder) {
+                for (int i = fset.first(keys[j]); 0 <= i; i = fset.next(i)) {
+                    int kind = fset.getFeatKind(i);
+                    if (fset.next(i) < 0) {
+                        kind |= LAST;
+                    }
+                    out.writeByte(kind);
+                }
+            }
+            for (byte[] b : names) {
+                out.write(b);
+            }
+        }
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Saved frozen index:", file, keys.length, size);
+        }
+    }
+
+    private static int addName(IntMap nameIds, List<byte[]> names,
+                               SymbolTable symbols, int ident) {
+        int id = nameIds.get(ident);
+        if (id < 0) {
+            id = names.size();
+            names.add(symbols.getName(ident).getBytes(UTF8));
+            nameIds.put(ident, id);
+        }
+        return id;
+    }
+
+    private static long getScopeKey(int parent, int name) {
+        return (((long)(parent+1)) << 32) | name;
+    }
+
+    private static Integer[] sortOrder(
+        int n, int[] parents, int[] names) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = getScopeKey(parents[i], names[i]);
+        }
+        return sortOrder(keys);
+    }
+
+    private static Integer[] sortOrder(final long[] keys) {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(keys[a], keys[b]);
+                }
+            });
+        return order;
+    }
+}
@@ -0,0 +1,171 @@
+//  GlossaryWriter.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  GlossaryWriter
+//  Treats each file as a document, as tools/listfreq.py and
+//  tools/genglossary.py treat each project. The phrases of each file
+//  are counted as the file streams through, and the document frequency
+//  of each phrase is accumulated. When closed, it writes the top n
+//  phrases of each file ranked by score*idf:
+//
+//    + path
+//    word
+//    ...
+//
+//  and optionally the document frequencies in the format of
+//  data/phrases-java.lst. The scores of each file are spilled into
+//  a temporary file until all the frequencies are known.
+//
+public class GlossaryWriter extends PhraseWriter {
+
+    private int _topN;
+    private File _dfFile = null;
+
+    // Document frequency of each phrase id.
+    private int[] _df = new int[1024];
+    // Phrase ids in order of their first appearance.
+    private int[] _order = new int[1024];
+    private int _nphrases = 0;
+    private int _ndocs = 0;
+
+    private File _tmp;
+    private DataOutputStream _spill;
+    private IOException _spillError = null;
+
+    public GlossaryWriter(OutputStream out, int bufsize, int topN)
+        throws IOException {
+        super(out, bufsize);
+        _topN = topN;
+        _tmp = File.createTempFile("getidents", ".gloss");
+        _tmp.deleteOnExit();
+        _spill = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(_tmp), 65536));
+    }
+
+    // setFrequencyFile: writes the document frequencies to a file.
+    public void setFrequencyFile(File file) {
+        _dfFile = file;
+    }
+
+    @Override
+    public void startFile(String path) {
+        _counter.clear();
+    }
+
+    @Override
+    public void endFile(String path) {
+        int n = _counter.count();
+        _ndocs++;
+        try {
+            _spill.writeUTF(path);
+            Utils.writeVarInt(_spill, n);
+            for (int i = 0; i < n; i++) {
+                int id = _counter.getPhrase(i);
+                addDocument(id);
+                Utils.writeVarInt(_spill, id);
+                _spill.writeDouble(_counter.getScore(i));
+            }
+        } catch (IOException e) {
+            _spillError = e;
+        }
+        _counter.clear();
+    }
+
+    private void addDocument(int id) {
+        if (_df.length <= id) {
+            _df = Arrays.copyOf(_df, Math.max(id+1, _df.length*2));
+        }
+        if (_df[id] == 0) {
+            if (_nphrases == _order.length) {
+                _order = Arrays.copyOf(_order, _nphrases*2);
+            }
+            _order[_nphrases++] = id;
+        }
+        _df[id]++;
+    }
+
+    @Override
+    protected void writePhrases()
+        throws IOException {
+        _spill.close();
+        try {
+            if (_spillError != null) throw _spillError;
+            writeGlossary();
+        } finally {
+            _tmp.delete();
+        }
+        if (_dfFile != null) {
+            writeFrequencies(_dfFile);
+        }
+    }
+
+    private void writeGlossary()
+        throws IOException {
+        double idf0 = Math.log(_ndocs);
+        int[] ids = new int[64];
+        double[] scores = new double[64];
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(_tmp), 65536))) {
+            for (int d = 0; d < _ndocs; d++) {
+                String path = in.readUTF();
+                int n = Utils.readVarInt(in);
+                if (ids.length < n) {
+                    ids = new int[n];
+                    scores = new double[n];
+                }
+                Integer[] ranks = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    ids[i] = Utils.readVarInt(in);
+                    double idf = idf0 - Math.log(_df[ids[i]]);
+                    scores[i] = in.readDouble() * idf;
+                    ranks[i] = i;
+                }
+                sortByScore(ranks, scores);
+                writeLine("+ "+path);
+                for (int i = 0; i < Math.min(n, _topN); i++) {
+                    writeLine(_counter.getPhraseName(ids[ranks[i]]));
+                }
+            }
+        }
+    }
+
+    // sortByScore: sorts the indices by their scores in descending
+    //   order. Ties keep their order as Python's sort.
+    private static void sortByScore(Integer[] ranks, final double[] scores) {
+        Arrays.sort(ranks, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(scores[b], scores[a]);
+                }
+            });
+    }
+
+    // writeFrequencies: writes the phrases that appear in two or more
+    //   documents, as tools/listfreq.py.
+    private void writeFrequencies(File file)
+        throws IOException {
+        Integer[] ranks = new Integer[_nphrases];
+        double[] dfs = new double[_nphrases];
+        for (int i = 0; i < _nphrases; i++) {
+            ranks[i] = i;
+            dfs[i] = _df[_order[i]];
+        }
+        sortByScore(ranks, dfs);
+        try (Writer out = new BufferedWriter(
+                 new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            out.write("# phrases list\n");
+            out.write(_ndocs+" *\n");
+            for (Integer i : ranks) {
+                int df = _df[_order[i]];
+                if (df < 2) break;
+                out.write(df+" "+_counter.getPhraseName(_order[i])+"\n");
+            }
+        }
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Saved frequencies:", file, _nphrases);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+//  IntMap.java
+//
+package getIdents;
+import java.util.*;
+
+//  IntMap
+//  Maps non-negative ints to ints with open addressing,
+//  without boxing.
+//
+class IntMap {
+
+    private int[] _keys;
+    private int[] _values;
+    private int _size = 0;
+
+    public IntMap() {
+        this(16);
+    }
+
+    public IntMap(int capacity) {
+        int n = 16;
+        while (n < capacity*2) {
+            n *= 2;
+        }
+        alloc(n);
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    // get: returns the value of a key, or -1.
+    public int get(int k) {
+        int slot = findSlot(k);
+        return (_keys[slot] == k)? _values[slot] : -1;
+    }
+
+    public void put(int k, int v) {
+        int slot = findSlot(k);
+        if (_keys[slot] != k) {
+            _keys[slot] = k;
+            _size++;
+        }
+        _values[slot] = v;
+        if (_keys.length < _size*2) {
+            alloc(_keys.length*2);
+        }
+    }
+
+    public void clear() {
+        if (_size == 0) return;
+        Arrays.fill(_keys, -1);
+        _size = 0;
+    }
+
+    private int findSlot(int k) {
+        int mask = _keys.length-1;
+        int slot = hash(k) & mask;
+        while (true) {
+            int k1 = _keys[slot];
+            if (k1 == k || k1 < 0) return slot;
+            slot = (slot+1) & mask;
+        }
+    }
+
+    private void alloc(int n) {
+        int[] keys = _keys;
+        int[] values = _values;
+        _keys = new int[n];
+        _values = new int[n];
+        Arrays.fill(_keys, -1);
+        if (keys != null) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                int k = keys[slot];
+                if (k < 0) continue;
+                int slot1 = findSlot(k);
+                _keys[slot1] = k;
+                _values[slot1] = values[slot];
+            }
+        }
+    }
+
+    private static int hash(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,71 @@
+//  JavaParser.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import org.eclipse.jdt.core.*;
+import org.eclipse.jdt.core.dom.*;
+
+//  JavaParser
+//  Parses Java source files without bindings.
+//  The compiler options are built once and shared by all the parsers.
+//  A parser keeps its own decoder and buffer, so it must be used
+//  by one thread at a time.
+//
+class JavaParser {
+
+    private static final String[] SRCPATH = { "." };
+    private static Map<String, String> _options = null;
+
+    private CharsetDecoder _decoder;
+    private CharBuffer _chars = CharBuffer.allocate(65536);
+
+    public JavaParser(Charset charset) {
+        // Malformed input is replaced as new String(byte[]) does.
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public static synchronized Map<String, String> getOptions() {
+        if (_options == null) {
+            Map<String, String> options = JavaCore.getOptions();
+            JavaCore.setComplianceOptions(JavaCore.VERSION_1_7, options);
+            _options = Collections.unmodifiableMap(options);
+        }
+        return _options;
+    }
+
+    public static ASTParser newParser() {
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(false);
+        parser.setEnvironment(null, SRCPATH, null, true);
+        parser.setCompilerOptions(getOptions());
+        return parser;
+    }
+
+    // parse: parses the content of a file.
+    public CompilationUnit parse(String path, byte[] data) {
+        ASTParser parser = newParser();
+        parser.setUnitName(path);
+        parser.setSource(decode(data));
+        return (CompilationUnit)parser.createAST(null);
+    }
+
+    // decode: decodes bytes into the buffer and returns a copy.
+    private char[] decode(byte[] data) {
+        int n = (int)(data.length * (double)_decoder.maxCharsPerByte()) + 1;
+        if (_chars.capacity() < n) {
+            _chars = CharBuffer.allocate(Math.max(n, _chars.capacity()*2));
+        }
+        _chars.clear();
+        _decoder.reset();
+        ByteBuffer in = ByteBuffer.wrap(data);
+        _decoder.decode(in, _chars, true);
+        _decoder.flush(_chars);
+        return Arrays.copyOf(_chars.array(), _chars.position());
+    }
+}
@@ -0,0 +1,61 @@
+//  LocalTable.java
+//
+package getIdents;
+import java.util.*;
+
+//  LocalTable
+//  A stack of the local variables of a file. A frame is pushed for
+//  each namespace and its variables are removed when it is popped.
+//  A variable shadows the ones of the same name in the outer frames.
+//
+class LocalTable {
+
+    // Newest entry of each identifier.
+    private IntMap _top = new IntMap();
+    // Entries: identifier, type and the entry it shadows.
+    private int[] _idents = new int[64];
+    private String[] _types = new String[64];
+    private int[] _prev = new int[64];
+    private int _nentries = 0;
+    // Frames: the first entry.
+    private int[] _marks = new int[16];
+    private int _depth = 0;
+
+    public void push() {
+        if (_marks.length == _depth) {
+            _marks = Arrays.copyOf(_marks, _depth*2);
+        }
+        _marks[_depth] = _nentries;
+        _depth++;
+    }
+
+    public void pop() {
+        assert 0 < _depth;
+        _depth--;
+        while (_marks[_depth] < _nentries) {
+            _nentries--;
+            _top.put(_idents[_nentries], _prev[_nentries]);
+            _types[_nentries] = null;
+        }
+    }
+
+    // declare: adds a variable to the current frame.
+    public void declare(int ident, String typename) {
+        if (_idents.length == _nentries) {
+            _idents = Arrays.copyOf(_idents, _nentries*2);
+            _types = Arrays.copyOf(_types, _nentries*2);
+            _prev = Arrays.copyOf(_prev, _nentries*2);
+        }
+        _idents[_nentries] = ident;
+        _types[_nentries] = typename;
+        _prev[_nentries] = _top.get(ident);
+        _top.put(ident, _nentries);
+        _nentries++;
+    }
+
+    // lookup: returns the type of the innermost variable, or null.
+    public String lookup(int ident) {
+        int i = _top.get(ident);
+        return (i < 0)? null : _types[i];
+    }
+}
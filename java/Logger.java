@@ -6,19 +6,66 @@ import java.util.*;
 
 //  Logger
 //
+//  Calls on a hot path should be guarded so that nothing is
+//  allocated or computed when the level is off:
+//
+//    if (Logger.isDebugEnabled()) {
+//        Logger.debug("addu:", Utils.join(dus));
+//    }
+//
+//  Calls with up to three arguments do not allocate a varargs array.
+//
 public class Logger {
 
     public static PrintStream out = System.err;
     public static int LogLevel = 0;
 
+    public static boolean isInfoEnabled() {
+        return 1 <= LogLevel;
+    }
+
+    public static boolean isDebugEnabled() {
+        return 2 <= LogLevel;
+    }
+
+    public static void info(Object a0) {
+        if (isInfoEnabled()) {
+            println(new Object[] { a0 });
+        }
+    }
+    public static void info(Object a0, Object a1) {
+        if (isInfoEnabled()) {
+            println(new Object[] { a0, a1 });
+        }
+    }
+    public static void info(Object a0, Object a1, Object a2) {
+        if (isInfoEnabled()) {
+            println(new Object[] { a0, a1, a2 });
+        }
+    }
     public static void info(Object ... a) {
-        if (1 <= LogLevel) {
+        if (isInfoEnabled()) {
             println(a);
         }
     }
 
+    public static void debug(Object a0) {
+        if (isDebugEnabled()) {
+            println(new Object[] { a0 });
+        }
+    }
+    public static void debug(Object a0, Object a1) {
+        if (isDebugEnabled()) {
+            println(new Object[] { a0, a1 });
+        }
+    }
+    public static void debug(Object a0, Object a1, Object a2) {
+        if (isDebugEnabled()) {
+            println(new Object[] { a0, a1, a2 });
+        }
+    }
     public static void debug(Object ... a) {
-        if (2 <= LogLevel) {
+        if (isDebugEnabled()) {
             println(a);
         }
     }
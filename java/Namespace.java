@@ -0,0 +1,100 @@
+//  Namespace.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import org.eclipse.jdt.core.*;
+import org.eclipse.jdt.core.dom.*;
+
+//  Namespace
+//  Each namespace has an id of its full path (getId) and an id of
+//  its name alone at the top level (getLocalId). The ids are given
+//  by NamespaceWalker when they are first needed, so the namespaces
+//  that key no feature are not interned.
+//
+class Namespace {
+
+    // Id that is not given yet.
+    public static final int UNKNOWN = -2;
+
+    private Namespace _parent;
+    private String _name;
+    private int _id = UNKNOWN;
+    private int _localId = UNKNOWN;
+    private String _qname;
+
+    public Namespace(Namespace parent, String name) {
+        _parent = parent;
+        _name = name;
+    }
+
+    public Namespace(Namespace parent, Name name) {
+        if (name instanceof SimpleName) {
+            _parent = parent;
+            _name = ((SimpleName)name).getIdentifier();
+        } else {
+            _parent = new Namespace(
+                parent, ((QualifiedName)name).getQualifier());
+            _name = ((QualifiedName)name).getName().getIdentifier();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (_qname == null) {
+            if (_parent == null) {
+                _qname = _name;
+            } else {
+                _qname = _parent.toString()+"."+_name;
+            }
+        }
+        return _qname;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public int getId() {
+        return _id;
+    }
+
+    public void setId(int id) {
+        _id = id;
+    }
+
+    public int getLocalId() {
+        return _localId;
+    }
+
+    public void setLocalId(int id) {
+        _localId = id;
+    }
+
+    public Namespace getParent() {
+        return _parent;
+    }
+
+    public Namespace findParent(String t) {
+        Namespace space = this;
+        while (space != null && !space._name.startsWith(t)) {
+            space = space._parent;
+        }
+        return space;
+    }
+
+    public String getKey(int i) {
+        Namespace space = this;
+        String name = null;
+        while (space != null && 0 < i) {
+            if (name == null) {
+                name = space._name;
+            } else {
+                name = space._name + "." + name;
+            }
+            i--;
+            space = space._parent;
+        }
+        return name;
+    }
+}
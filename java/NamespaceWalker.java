@@ -0,0 +1,220 @@
+//  NamespaceWalker.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import org.eclipse.jdt.core.*;
+import org.eclipse.jdt.core.dom.*;
+
+//  NamespaceWalker
+//  Keeps the current namespace while walking an AST. With useLocals(),
+//  it also keeps the local variables in a LocalTable whose frames
+//  follow the namespaces.
+//
+//  Each namespace visited is numbered (getSerial), and is interned
+//  only when its id is asked for (getId, getLocalId).
+//
+class NamespaceWalker extends ASTVisitor {
+
+    private SymbolTable _symbols;
+    private Namespace _current;
+    private LocalTable _locals = null;
+    private int _nodes = 0;
+    // Serial numbers of the current and the enclosing namespaces.
+    private int _serial = 0;
+    private int[] _serials = new int[16];
+    private int _depth = 0;
+    private int _nserials = 0;
+
+    public NamespaceWalker(SymbolTable symbols) {
+        _symbols = symbols;
+        _current = new Namespace(null, "");
+    }
+
+    public SymbolTable getSymbols() {
+        return _symbols;
+    }
+
+    // useLocals: keeps the local variables of the file in a table
+    //   instead of the feature set.
+    public void useLocals() {
+        _locals = new LocalTable();
+    }
+
+    // getLocals: returns the table of local variables, or null.
+    public LocalTable getLocals() {
+        return _locals;
+    }
+
+    // getNodeCount: returns the number of nodes visited.
+    public int getNodeCount() {
+        return _nodes;
+    }
+
+    @Override
+    public boolean preVisit2(ASTNode node) {
+        _nodes++;
+        return true;
+    }
+
+    public Namespace getCurrent() {
+        return _current;
+    }
+
+    // getSerial: returns the number of the current namespace,
+    //   which is distinct for each namespace visited in the file.
+    public int getSerial() {
+        return _serial;
+    }
+
+    // getId: returns the id of the full path of a namespace,
+    //   or -1 if it is unknown.
+    public int getId(Namespace space) {
+        int id = space.getId();
+        if (id == Namespace.UNKNOWN) {
+            Namespace parent = space.getParent();
+            if (parent == null) {
+                id = getScope(-1, space.getName());
+            } else {
+                int pid = getId(parent);
+                id = (pid < 0)? -1 : getScope(pid, space.getName());
+            }
+            space.setId(id);
+        }
+        return id;
+    }
+
+    // getLocalId: returns the id of the name of a namespace
+    //   at the top level, or -1 if it is unknown.
+    public int getLocalId(Namespace space) {
+        int id = space.getLocalId();
+        if (id == Namespace.UNKNOWN) {
+            id = getScope(-1, space.getName());
+            space.setLocalId(id);
+        }
+        return id;
+    }
+
+    // getScope: returns the id of a namespace, interning it.
+    protected int getScope(int parent, String name) {
+        return _symbols.getScope(parent, _symbols.intern(name));
+    }
+
+    public Namespace findParent(String t) {
+        return _current.findParent(t);
+    }
+
+    @Override
+    public boolean visit(PackageDeclaration node) {
+        _current = new Namespace(null, node.getName());
+        _serial = ++_nserials;
+        return true;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        push("T"+node.getName().getIdentifier());
+        return true;
+    }
+    @Override
+    public void endVisit(TypeDeclaration node) {
+        pop();
+    }
+
+    @Override
+    public boolean visit(AnnotationTypeDeclaration node) {
+        push("A"+node.getName().getIdentifier());
+        return true;
+    }
+    @Override
+    public void endVisit(AnnotationTypeDeclaration node) {
+        pop();
+    }
+
+    @Override
+    public boolean visit(TypeDeclarationStatement node) {
+        push("T"+node.getDeclaration().getName().getIdentifier());
+        return true;
+    }
+    @Override
+    public void endVisit(TypeDeclarationStatement node) {
+        pop();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(EnumDeclaration node) {
+        push("T"+node.getName().getIdentifier());
+        return true;
+    }
+    @Override
+    public void endVisit(EnumDeclaration node) {
+        pop();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(MethodDeclaration node) {
+        push("M"+node.getName().getIdentifier());
+        return true;
+    }
+    @Override
+    public void endVisit(MethodDeclaration node) {
+        pop();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(Initializer node) {
+        push("M:static");
+        return true;
+    }
+    @Override
+    public void endVisit(Initializer node) {
+        pop();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(LambdaExpression node) {
+        push("M:lambda"+node.getStartPosition());
+        return true;
+    }
+    @Override
+    public void endVisit(LambdaExpression node) {
+        pop();
+    }
+
+    @Override
+    public boolean visit(Block node) {
+        push("B"+node.getStartPosition());
+        return true;
+    }
+    @Override
+    public void endVisit(Block node) {
+        pop();
+    }
+
+    private void push(String name) {
+        _current = new Namespace(_current, name);
+        if (_serials.length == _depth) {
+            _serials = Arrays.copyOf(_serials, _depth*2);
+        }
+        _serials[_depth++] = _serial;
+        _serial = ++_nserials;
+        if (_locals != null) {
+            _locals.push();
+        }
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("current:", _current);
+        }
+    }
+    private void pop() {
+        assert _current != null;
+        _current = _current.getParent();
+        _serial = _serials[--_depth];
+        if (_locals != null) {
+            _locals.pop();
+        }
+    }
+}
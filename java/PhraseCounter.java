@@ -0,0 +1,255 @@
+//  PhraseCounter.java
+//
+package getIdents;
+import java.util.*;
+
+//  PhraseCounter
+//  Counts the phrases of the names in a document as get_phrases()
+//  of tools/phrases.py does.
+//
+//  Def-use kinds are folded into the categories T, F and V by the
+//  idmap (default: T/r/u/e -> T, F/f -> F, V/v/a -> V). A phrase is a
+//  sequence of the words of a name joined by "/". Names and phrases
+//  are interned across documents, and the counts of a document are
+//  kept in primitive arrays:
+//
+//    counter.add(kind, name); ...
+//    int n = counter.count();
+//    for (int i = 0; i < n; i++) {
+//        counter.getPhrase(i); counter.getValue(i, PhraseCounter.T);
+//    }
+//    counter.clear();
+//
+class PhraseCounter {
+
+    public static final String CATEGORIES = "TFV";
+    public static final int T = 0;
+    public static final int F = 1;
+    public static final int V = 2;
+
+    // Category of each kind, or -1.
+    private int[] _idmap = new int[128];
+    private PhraseTable _names = new PhraseTable();
+    private PhraseTable _phrases = new PhraseTable();
+
+    // Names of the document, in order of appearance.
+    private IntMap _nameIndex = new IntMap();
+    private int[] _nameIds = new int[64];
+    private int[] _nameCounts = new int[64*3];
+    private int _nnames = 0;
+    private int[] _cats = new int[3];
+
+    // Phrases of the document, in order of appearance.
+    private IntMap _phraseIndex = new IntMap();
+    private int[] _phraseIds = new int[64];
+    private int[] _phraseCounts = new int[64*3];
+    private int _nphrases = 0;
+
+    private int[] _bounds = new int[32];
+    private char[] _word = new char[64];
+
+    public PhraseCounter() {
+        Arrays.fill(_idmap, -1);
+        setCategory("True", 'T');
+        setCategory("Ff", 'F');
+        setCategory("Vva", 'V');
+    }
+
+    // setCategory: folds def-use kinds into a category (T, F or V).
+    public void setCategory(String kinds, char cat) {
+        int i = CATEGORIES.indexOf(cat);
+        if (i < 0) {
+            throw new IllegalArgumentException("Invalid category: "+cat);
+        }
+        for (int j = 0; j < kinds.length(); j++) {
+            _idmap[kinds.charAt(j) & 0x7f] = i;
+        }
+    }
+
+    // clearCategories: removes all the kinds from the categories.
+    public void clearCategories() {
+        Arrays.fill(_idmap, -1);
+    }
+
+    public String getPhraseName(int id) {
+        return _phrases.getName(id);
+    }
+
+    // getCatCount: returns the number of names in a category.
+    public int getCatCount(int cat) {
+        return _cats[cat];
+    }
+
+    // getCatNum: returns the number of categories that appear.
+    public int getCatNum() {
+        int n = 0;
+        for (int c : _cats) {
+            if (0 < c) n++;
+        }
+        return n;
+    }
+
+    public void add(char kind, String name) {
+        int cat = (kind < 128)? _idmap[kind] : -1;
+        if (cat < 0) return;
+        int id = _names.intern(name);
+        int i = _nameIndex.get(id);
+        if (i < 0) {
+            i = _nnames++;
+            if (_nameIds.length == i) {
+                _nameIds = Arrays.copyOf(_nameIds, i*2);
+                _nameCounts = Arrays.copyOf(_nameCounts, i*2*3);
+            }
+            _nameIds[i] = id;
+            _nameIndex.put(id, i);
+        }
+        _nameCounts[i*3+cat]++;
+        _cats[cat]++;
+    }
+
+    // count: counts every contiguous word sequence of the names and
+    //   keeps the phrases that appear in every category.
+    //   Returns the number of the phrases.
+    public int count() {
+        for (int i = 0; i < _nnames; i++) {
+            String name = _names.getName(_nameIds[i]);
+            int n = name.length();
+            if (_bounds.length < n*2) {
+                _bounds = new int[n*2];
+            }
+            if (_word.length < n*2) {
+                _word = new char[n*2];
+            }
+            int nwords = splitWords(name, _bounds);
+            for (int j = 0; j < nwords; j++) {
+                int length = 0;
+                for (int k = j; k < nwords; k++) {
+                    if (j < k) {
+                        _word[length++] = '/';
+                    }
+                    for (int x = _bounds[k*2]; x < _bounds[k*2+1]; x++) {
+                        char c = name.charAt(x);
+                        _word[length++] = isUpper(c)? (char)(c+('a'-'A')) : c;
+                    }
+                    addPhrase(_phrases.intern(_word, length), i);
+                }
+            }
+        }
+        // Keep the phrases that appear in every category.
+        int ncats = getCatNum();
+        int m = 0;
+        for (int i = 0; i < _nphrases; i++) {
+            int n = 0;
+            for (int cat = 0; cat < 3; cat++) {
+                if (0 < _phraseCounts[i*3+cat]) n++;
+            }
+            if (n != ncats) continue;
+            _phraseIds[m] = _phraseIds[i];
+            System.arraycopy(_phraseCounts, i*3, _phraseCounts, m*3, 3);
+            m++;
+        }
+        _nphrases = m;
+        return m;
+    }
+
+    private void addPhrase(int id, int name) {
+        int i = _phraseIndex.get(id);
+        if (i < 0) {
+            i = _nphrases++;
+            if (_phraseIds.length == i) {
+                _phraseIds = Arrays.copyOf(_phraseIds, i*2);
+                _phraseCounts = Arrays.copyOf(_phraseCounts, i*2*3);
+            }
+            _phraseIds[i] = id;
+            _phraseCounts[i*3+T] = 0;
+            _phraseCounts[i*3+F] = 0;
+            _phraseCounts[i*3+V] = 0;
+            _phraseIndex.put(id, i);
+        }
+        for (int cat = 0; cat < 3; cat++) {
+            _phraseCounts[i*3+cat] += _nameCounts[name*3+cat];
+        }
+    }
+
+    // getPhrase: returns the id of the i-th phrase.
+    public int getPhrase(int i) {
+        return _phraseIds[i];
+    }
+
+    // getValue: returns the count of the names that contain the phrase
+    //   divided by the number of names in the category.
+    public double getValue(int i, int cat) {
+        return _phraseCounts[i*3+cat] / (double)Math.max(_cats[cat], 1);
+    }
+
+    // getScore: returns the geometric mean of the values.
+    public double getScore(int i) {
+        return Math.pow(getValue(i, T)*getValue(i, V)*getValue(i, F), 1.0/3);
+    }
+
+    // clear: starts a new document.
+    public void clear() {
+        _nameIndex.clear();
+        Arrays.fill(_nameCounts, 0, _nnames*3, 0);
+        _nnames = 0;
+        Arrays.fill(_cats, 0);
+        _phraseIndex.clear();
+        _nphrases = 0;
+    }
+
+    // splitWords: splits a name into words as splitwords() of
+    //   tools/phrases.py, i.e. matches [0-9]*[a-z]+[A-Z]?|[0-9]*[A-Z]+
+    //   from the end of the name. The start and end of each word
+    //   are stored in bounds, which needs name.length()*2 elements.
+    //   Returns the number of words.
+    public static int splitWords(String name, int[] bounds) {
+        int n = 0;
+        int i = name.length();
+        while (0 < i) {
+            int end = i;
+            while (0 < i && isDigit(name.charAt(i-1))) {
+                i--;
+            }
+            if (0 < i && isLower(name.charAt(i-1))) {
+                while (0 < i && isLower(name.charAt(i-1))) {
+                    i--;
+                }
+                if (0 < i && isUpper(name.charAt(i-1))) {
+                    i--;
+                }
+            } else if (0 < i && isUpper(name.charAt(i-1))) {
+                while (0 < i && isUpper(name.charAt(i-1))) {
+                    i--;
+                }
+            } else {
+                // No match here: try from the next character.
+                i = end-1;
+                continue;
+            }
+            bounds[n*2] = i;
+            bounds[n*2+1] = end;
+            n++;
+        }
+        // Put the words in order.
+        for (int j = 0; j < n/2; j++) {
+            int k = n-1-j;
+            int start = bounds[j*2];
+            int end = bounds[j*2+1];
+            bounds[j*2] = bounds[k*2];
+            bounds[j*2+1] = bounds[k*2+1];
+            bounds[k*2] = start;
+            bounds[k*2+1] = end;
+        }
+        return n;
+    }
+
+    private static boolean isDigit(char c) {
+        return ('0' <= c && c <= '9');
+    }
+    private static boolean isLower(char c) {
+        return ('a' <= c && c <= 'z');
+    }
+    private static boolean isUpper(char c) {
+        return ('A' <= c && c <= 'Z');
+    }
+}
@@ -0,0 +1,99 @@
+//  PhraseTable.java
+//
+package getIdents;
+import java.util.*;
+
+//  PhraseTable
+//  Interns strings as integer ids. A string can be looked up by
+//  its characters, so that no String is created for a known one.
+//
+class PhraseTable {
+
+    // Open addressing table of (id+1), or 0 for an empty slot.
+    private int[] _slots = new int[1024];
+    private int[] _hashes = new int[512];
+    private String[] _names = new String[512];
+    private int _size = 0;
+
+    public int size() {
+        return _size;
+    }
+
+    public String getName(int id) {
+        return _names[id];
+    }
+
+    public int intern(String s) {
+        int n = s.length();
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            h = h*31 + s.charAt(i);
+        }
+        int slot = findSlot(h, s, null, n);
+        if (_slots[slot] != 0) return _slots[slot]-1;
+        return add(slot, h, s);
+    }
+
+    // intern: returns the id of the first n chars of b.
+    public int intern(char[] b, int n) {
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            h = h*31 + b[i];
+        }
+        int slot = findSlot(h, null, b, n);
+        if (_slots[slot] != 0) return _slots[slot]-1;
+        return add(slot, h, new String(b, 0, n));
+    }
+
+    private int add(int slot, int h, String s) {
+        if (_size == _names.length) {
+            _names = Arrays.copyOf(_names, _size*2);
+            _hashes = Arrays.copyOf(_hashes, _size*2);
+        }
+        int id = _size++;
+        _names[id] = s;
+        _hashes[id] = h;
+        _slots[slot] = id+1;
+        if (_slots.length < _size*2) {
+            rehash(_slots.length*2);
+        }
+        return id;
+    }
+
+    private int findSlot(int h, String s, char[] b, int n) {
+        int mask = _slots.length-1;
+        int slot = hash(h) & mask;
+        while (true) {
+            int id = _slots[slot]-1;
+            if (id < 0) return slot;
+            if (_hashes[id] == h && equals(_names[id], s, b, n)) return slot;
+            slot = (slot+1) & mask;
+        }
+    }
+
+    private static boolean equals(String name, String s, char[] b, int n) {
+        if (s != null) return name.equals(s);
+        if (name.length() != n) return false;
+        for (int i = 0; i < n; i++) {
+            if (name.charAt(i) != b[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash(int size) {
+        _slots = new int[size];
+        int mask = size-1;
+        for (int id = 0; id < _size; id++) {
+            int slot = hash(_hashes[id]) & mask;
+            while (_slots[slot] != 0) {
+                slot = (slot+1) & mask;
+            }
+            _slots[slot] = id+1;
+        }
+    }
+
+    private static int hash(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,114 @@
+//  PhraseWriter.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  PhraseWriter
+//  Counts the phrases of the def-use names of all the files as one
+//  document (see PhraseCounter), and writes them when closed:
+//
+//    # T nT F nF V nV     (the number of names in each category)
+//    word T V F           (for each phrase, in order of appearance)
+//
+//  A phrase is written only if it appears in every category. Its values
+//  are written in full precision.
+//
+public class PhraseWriter extends DefUseOutput {
+
+    private static final byte[] NEWLINE =
+        System.lineSeparator().getBytes();
+
+    protected PhraseCounter _counter = new PhraseCounter();
+    private DefUseReader _reader = new DefUseReader();
+
+    public PhraseWriter(OutputStream out) {
+        this(out, 65536);
+    }
+
+    public PhraseWriter(OutputStream out, int bufsize) {
+        super(out, bufsize);
+    }
+
+    // setCategory: folds def-use kinds into a category (T, F or V).
+    public void setCategory(String kinds, char cat) {
+        _counter.setCategory(kinds, cat);
+    }
+
+    // clearCategories: removes all the kinds from the categories.
+    public void clearCategories() {
+        _counter.clearCategories();
+    }
+
+    @Override
+    public void startFile(String path) {
+    }
+
+    @Override
+    public void add(DefUse[] defuses) {
+        for (DefUse du : defuses) {
+            _counter.add(du.getKind(), du.name);
+        }
+    }
+
+    @Override
+    public void endFile(String path) {
+    }
+
+    @Override
+    public void writeLines(String path, List<String> lines) {
+        startFile(path);
+        for (String line : lines) {
+            for (String w : line.split(" ")) {
+                if (w.isEmpty()) continue;
+                _counter.add(w.charAt(0), w.substring(1));
+            }
+        }
+        endFile(path);
+    }
+
+    // writeBlock: counts a block in the binary format.
+    @Override
+    public void writeBlock(byte[] b) {
+        try {
+            _reader.readBlocks(b, this);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        writePhrases();
+        super.close();
+    }
+
+    // writePhrases: writes the phrases at the end.
+    protected void writePhrases()
+        throws IOException {
+        StringBuilder b = new StringBuilder("#");
+        for (int cat = 0; cat < 3; cat++) {
+            int n = _counter.getCatCount(cat);
+            if (n == 0) continue;
+            b.append(" "+PhraseCounter.CATEGORIES.charAt(cat)+" "+n);
+        }
+        writeLine(b.toString());
+        int n = _counter.count();
+        for (int i = 0; i < n; i++) {
+            // Written in the order of T, V, F as tools/phrases.py.
+            writeLine(_counter.getPhraseName(_counter.getPhrase(i))+" "+
+                      _counter.getValue(i, PhraseCounter.T)+" "+
+                      _counter.getValue(i, PhraseCounter.V)+" "+
+                      _counter.getValue(i, PhraseCounter.F));
+        }
+        _counter.clear();
+    }
+
+    protected void writeLine(String line) {
+        writeText(line);
+        for (byte b : NEWLINE) {
+            writeByte(b);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+//  ReorderBuffer.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//  ReorderBuffer
+//  Runs tasks on a pool and returns their results in the order of
+//  submission, while the tasks finish in any order:
+//
+//    ReorderBuffer buffer = new ReorderBuffer(capacity);
+//    buffer.submit(pool, task); ...
+//    byte[] b;
+//    while ((b = buffer.take()) != null) { out.writeBlock(b); }
+//
+//  A finished task waits while the results in the buffer exceed the
+//  capacity, unless its result is the next one to be taken. Since the
+//  pool starts tasks in order, the next task is always running or done.
+//
+class ReorderBuffer {
+
+    private long _capacity;
+    private Map<Integer, byte[]> _blocks = new HashMap<Integer, byte[]>();
+    private Throwable _error = null;
+    private int _nsubmitted = 0;
+    private int _next = 0;
+    private long _bytes = 0;
+    private long _maxBytes = 0;
+
+    public ReorderBuffer(long capacity) {
+        _capacity = capacity;
+    }
+
+    // getMaxBytes: returns the largest number of bytes buffered.
+    public synchronized long getMaxBytes() {
+        return _maxBytes;
+    }
+
+    // submit: runs a task on the pool.
+    public void submit(ExecutorService pool, final Callable<byte[]> task) {
+        final int seq = _nsubmitted++;
+        pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        put(seq, task.call());
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                }
+            });
+    }
+
+    // take: returns the next result, or null if all are taken.
+    public synchronized byte[] take()
+        throws IOException {
+        if (_next == _nsubmitted) return null;
+        try {
+            while (_error == null && !_blocks.containsKey(_next)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (_error instanceof IOException) {
+            throw (IOException)_error;
+        } else if (_error instanceof RuntimeException) {
+            throw (RuntimeException)_error;
+        } else if (_error instanceof Error) {
+            throw (Error)_error;
+        } else if (_error != null) {
+            throw new IOException(_error);
+        }
+        byte[] b = _blocks.remove(_next++);
+        _bytes -= b.length;
+        notifyAll();
+        return b;
+    }
+
+    private synchronized void put(int seq, byte[] b)
+        throws InterruptedException {
+        while (_error == null && seq != _next &&
+               _capacity < _bytes + b.length) {
+            wait();
+        }
+        _blocks.put(seq, b);
+        _bytes += b.length;
+        _maxBytes = Math.max(_maxBytes, _bytes);
+        notifyAll();
+    }
+
+    private synchronized void fail(Throwable t) {
+        if (_error == null) {
+            _error = t;
+        }
+        notifyAll();
+    }
+}
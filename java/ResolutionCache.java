@@ -0,0 +1,95 @@
+//  ResolutionCache.java
+//
+package getIdents;
+import java.util.*;
+
+//  ResolutionCache
+//  A bounded direct-mapped cache of resolved simple names keyed by
+//  (namespace serial, identifier id). The serial number of a visited
+//  namespace (NamespaceWalker.getSerial) stands for the whole chain of
+//  enclosing namespaces, so a name resolved once in a scope is
+//  resolved by one probe afterwards.
+//
+//  Each entry records the generation of its identifier, which is
+//  advanced by declare() when a variable of the name is declared,
+//  so that an entry made before the declaration is not used:
+//
+//    int slot = cache.find(scope, ident);
+//    if (0 <= slot) return cache.getValue(slot);
+//    ...; cache.put(scope, ident, typename);
+//
+class ResolutionCache {
+
+    private long[] _keys;
+    private int[] _gens;
+    private String[] _values;
+    // Generation of each identifier (default: 0).
+    private IntMap _generations = new IntMap();
+    private int _hits = 0;
+    private int _misses = 0;
+
+    // ResolutionCache(size): size is rounded up to a power of two.
+    public ResolutionCache(int size) {
+        int n = 16;
+        while (n < size) {
+            n *= 2;
+        }
+        _keys = new long[n];
+        _gens = new int[n];
+        _values = new String[n];
+        Arrays.fill(_keys, -1);
+    }
+
+    public int getHits() {
+        return _hits;
+    }
+
+    public int getMisses() {
+        return _misses;
+    }
+
+    // find: returns the slot of a valid entry, or -1.
+    public int find(int scope, int ident) {
+        long key = getKey(scope, ident);
+        int slot = getSlot(key);
+        if (_keys[slot] == key && _gens[slot] == getGeneration(ident)) {
+            _hits++;
+            return slot;
+        }
+        _misses++;
+        return -1;
+    }
+
+    // getValue: returns the resolved type name (null if unresolved).
+    public String getValue(int slot) {
+        return _values[slot];
+    }
+
+    // put: stores a resolved type name, replacing the previous entry.
+    public void put(int scope, int ident, String typename) {
+        long key = getKey(scope, ident);
+        int slot = getSlot(key);
+        _keys[slot] = key;
+        _gens[slot] = getGeneration(ident);
+        _values[slot] = typename;
+    }
+
+    // declare: invalidates the entries of an identifier.
+    public void declare(int ident) {
+        if (ident < 0) return;
+        _generations.put(ident, getGeneration(ident)+1);
+    }
+
+    private int getGeneration(int ident) {
+        return Math.max(_generations.get(ident), 0);
+    }
+
+    private static long getKey(int scope, int ident) {
+        return (((long)scope) << 32) | (ident & 0xffffffffL);
+    }
+
+    private int getSlot(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return (int)(key ^ (key >>> 32)) & (_keys.length-1);
+    }
+}
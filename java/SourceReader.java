@@ -0,0 +1,334 @@
+//  SourceReader.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+//  SourceReader
+//  Reads the inputs in a background thread so that reading overlaps
+//  with parsing. Archives (.jar, .zip, .tar, .tar.gz, .tgz) are
+//  expanded in memory into their .java entries named "archive!/entry".
+//  "-" reads a tar stream (gzipped or not) from stdin.
+//  Directories are walked by a DirWalker, and their files are passed
+//  as soon as they are found, before the walk finishes.
+//  Other files are passed by their paths and read by the parser.
+//
+//    SourceReader reader = new SourceReader(paths, walker, 64);
+//    for (Source src; (src = reader.next()) != null; ) { ... }
+//
+//  A range of the sources can be given, so that the others are
+//  skipped without being read (their number is given by getCount).
+//
+class SourceReader implements Runnable {
+
+    //  Source
+    //  A file to parse. data is null for a plain file.
+    //
+    public static class Source {
+        public String path;
+        public byte[] data;
+        public Source(String path, byte[] data) {
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    private static final Source END = new Source(null, null);
+
+    private List<String> _paths;
+    private DirWalker _walker;
+    private BlockingQueue<Source> _queue;
+    private volatile Throwable _error = null;
+    private int _start;
+    private int _end;
+    private volatile int _count = 0;
+
+    public SourceReader(List<String> paths, DirWalker walker, int capacity) {
+        this(paths, walker, capacity, 0, Integer.MAX_VALUE);
+    }
+
+    // SourceReader(paths, walker, capacity, start, end):
+    //   passes only the start-th to (end-1)-th sources.
+    public SourceReader(List<String> paths, DirWalker walker, int capacity,
+                        int start, int end) {
+        _paths = paths;
+        _walker = walker;
+        _queue = new ArrayBlockingQueue<Source>(capacity);
+        _start = start;
+        _end = end;
+        Thread thread = new Thread(this, "SourceReader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static boolean isArchive(String path) {
+        String name = path.toLowerCase();
+        return (path.equals("-") ||
+                name.endsWith(".jar") || name.endsWith(".zip") ||
+                name.endsWith(".tar") || name.endsWith(".tar.gz") ||
+                name.endsWith(".tgz"));
+    }
+
+    // isContainer: true if the path is expanded into other paths.
+    public static boolean isContainer(String path) {
+        return (isArchive(path) || new File(path).isDirectory());
+    }
+
+    // getCount: returns the number of sources including the skipped
+    //   ones, after next() returns null.
+    public int getCount() {
+        return _count;
+    }
+
+    // next: returns the next source, or null at the end.
+    public Source next()
+        throws IOException {
+        Source src;
+        try {
+            src = _queue.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (src != END) return src;
+        if (_error instanceof IOException) {
+            throw (IOException)_error;
+        } else if (_error instanceof RuntimeException) {
+            throw (RuntimeException)_error;
+        } else if (_error != null) {
+            throw new IOException(_error);
+        }
+        return null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (String path : _paths) {
+                if (_walker != null && new File(path).isDirectory()) {
+                    if (Logger.isInfoEnabled()) {
+                        Logger.info("  walking:", path);
+                    }
+                    _walker.walk(path, new DirWalker.Visitor() {
+                            @Override
+                            public void visit(String file)
+                                throws IOException {
+                                if (accept()) {
+                                    put(new Source(file, null));
+                                }
+                            }
+                        });
+                    continue;
+                }
+                if (!isArchive(path)) {
+                    if (accept()) {
+                        put(new Source(path, null));
+                    }
+                    continue;
+                }
+                if (Logger.isInfoEnabled()) {
+                    Logger.info("  reading:", path);
+                }
+                String name = path.toLowerCase();
+                if (path.equals("-")) {
+                    readTar(path, maybeGunzip(System.in));
+                } else if (name.endsWith(".jar") || name.endsWith(".zip")) {
+                    try (InputStream in = new FileInputStream(path)) {
+                        readZip(path, in);
+                    }
+                } else {
+                    try (InputStream in = new FileInputStream(path)) {
+                        readTar(path, maybeGunzip(in));
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            _error = e;
+        } finally {
+            try {
+                _queue.put(END);
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+
+    // accept: counts a source and returns true if it is in the range.
+    private boolean accept() {
+        int seq = _count++;
+        return (_start <= seq && seq < _end);
+    }
+
+    private void put(Source src)
+        throws InterruptedIOException {
+        try {
+            _queue.put(src);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void readZip(String path, InputStream input)
+        throws IOException {
+        ZipInputStream in = new ZipInputStream(
+            new BufferedInputStream(input, 65536));
+        while (true) {
+            ZipEntry entry = in.getNextEntry();
+            if (entry == null) break;
+            if (entry.isDirectory() || !entry.getName().endsWith(".java") ||
+                !accept()) {
+                continue;
+            }
+            put(new Source(path+"!/"+entry.getName(), readAll(in, -1)));
+        }
+    }
+
+    // readTar: reads a ustar/GNU/pax tar stream.
+    private void readTar(String path, InputStream input)
+        throws IOException {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(input, 65536));
+        byte[] header = new byte[512];
+        String longName = null;
+        while (true) {
+            // The end of the stream is allowed only between entries.
+            int b = in.read();
+            if (b < 0) break;
+            header[0] = (byte)b;
+            in.readFully(header, 1, header.length-1);
+            if (isZero(header)) break;
+            String name = getString(header, 0, 100);
+            if (getString(header, 257, 5).equals("ustar")) {
+                String prefix = getString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix+"/"+name;
+                }
+            }
+            long size = getSize(header);
+            char type = (char)header[156];
+            if (type == 'L') {
+                // GNU long name for the next entry.
+                byte[] data = readAll(in, size);
+                longName = getString(data, 0, data.length);
+            } else if (type == 'x') {
+                // pax header for the next entry.
+                String p = getPaxPath(readAll(in, size));
+                if (p != null) {
+                    longName = p;
+                }
+            } else if (type == '0' || type == '\0') {
+                if (longName != null) {
+                    name = longName;
+                    longName = null;
+                }
+                if (name.endsWith(".java") && accept()) {
+                    put(new Source(path+"!/"+name, readAll(in, size)));
+                } else {
+                    skipFully(in, size);
+                }
+            } else {
+                longName = null;
+                skipFully(in, size);
+            }
+            skipFully(in, (512 - size % 512) % 512);
+        }
+    }
+
+    private static InputStream maybeGunzip(InputStream input)
+        throws IOException {
+        BufferedInputStream in = new BufferedInputStream(input, 65536);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (b0 == 0x1f && b1 == 0x8b) {
+            return new GZIPInputStream(in, 65536);
+        }
+        return in;
+    }
+
+    private static byte[] readAll(InputStream in, long size)
+        throws IOException {
+        if (0 <= size) {
+            if (Integer.MAX_VALUE < size) {
+                throw new IOException("Entry too large: "+size);
+            }
+            byte[] data = new byte[(int)size];
+            new DataInputStream(in).readFully(data);
+            return data;
+        }
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (true) {
+            int n = in.read(buf, 0, buf.length);
+            if (n < 0) break;
+            b.write(buf, 0, n);
+        }
+        return b.toByteArray();
+    }
+
+    // skipFully: reads and discards n bytes. (skip() of a file
+    //   goes past its end, which would hide a truncated archive.)
+    private static void skipFully(InputStream in, long n)
+        throws IOException {
+        byte[] buf = new byte[(int)Math.min(n, 8192)];
+        while (0 < n) {
+            int k = in.read(buf, 0, (int)Math.min(n, buf.length));
+            if (k < 0) throw new EOFException();
+            n -= k;
+        }
+    }
+
+    private static boolean isZero(byte[] b) {
+        for (byte c : b) {
+            if (c != 0) return false;
+        }
+        return true;
+    }
+
+    private static String getString(byte[] b, int start, int length) {
+        int end = start;
+        while (end < start+length && b[end] != 0) {
+            end++;
+        }
+        return new String(b, start, end-start, StandardCharsets.UTF_8);
+    }
+
+    private static long getSize(byte[] header)
+        throws IOException {
+        if ((header[124] & 0x80) != 0) {
+            // base-256 encoding.
+            long v = 0;
+            for (int i = 125; i < 136; i++) {
+                v = (v << 8) | (header[i] & 0xff);
+            }
+            return v;
+        }
+        String s = getString(header, 124, 12).trim();
+        if (s.isEmpty()) return 0;
+        try {
+            return Long.parseLong(s, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tar header: "+s);
+        }
+    }
+
+    // getPaxPath: returns the path record of a pax header.
+    private static String getPaxPath(byte[] data) {
+        String s = new String(data, StandardCharsets.UTF_8);
+        int i = 0;
+        while (i < s.length()) {
+            // Each record is "length key=value\n".
+            int sp = s.indexOf(' ', i);
+            int nl = s.indexOf('\n', i);
+            if (sp < 0 || nl < 0) break;
+            String record = s.substring(sp+1, nl);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            i = nl+1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,379 @@
+//  SpillFeatureSet.java
+//
+package getIdents;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+//  SpillFeatureSet
+//  A FeatureSet that keeps its heap usage within a budget.
+//
+//  Features are added to the in-memory table (the hot tier). When the
+//  table exceeds the budget, its keys are sorted and written into a
+//  temporary file (a run), which is memory-mapped and read in place.
+//  Each run has a bloom filter in the heap, so that looking up a key
+//  that is not there does not touch the disk. The newest runs are
+//  merged into one when they are as large as the run before them,
+//  like the digits of a binary counter, so that there are O(log n)
+//  runs and each feature is merged O(log n) times.
+//
+//  The budget includes the SymbolTable, which cannot be spilled.
+//
+//  The features of a key are visited in the order they were added,
+//  i.e. from the oldest run to the hot tier. Features in the runs are
+//  numbered from 0 and those in the hot tier from HOT.
+//
+//  Run format:
+//    int nkeys, int nfeats,
+//    long keys[nkeys] (sorted), int starts[nkeys+1],
+//    int names[nfeats], byte kinds[nfeats]
+//
+class SpillFeatureSet extends FeatureSet {
+
+    private static final int HOT = 1 << 30;
+    private static final int MAX_RUN_FEATS = 1 << 26;
+    private static final int BLOOM_BITS = 10;
+    // The hot tier is allowed at least this much.
+    private static final long MIN_HOT = 1 << 20;
+
+    //  Run
+    //
+    private static class Run {
+
+        public File file;
+        public ByteBuffer buf;
+        public BloomFilter bloom;
+        public int nkeys;
+        public int nfeats;
+        // Number of the first feature.
+        public int base;
+
+        private int _startsOff;
+        private int _namesOff;
+        private int _kindsOff;
+
+        public Run(int nkeys, int nfeats)
+            throws IOException {
+            this.nkeys = nkeys;
+            this.nfeats = nfeats;
+            _startsOff = 8 + nkeys*8;
+            _namesOff = _startsOff + (nkeys+1)*4;
+            _kindsOff = _namesOff + nfeats*4;
+            int size = _kindsOff + nfeats;
+            file = File.createTempFile("getidents", ".run");
+            file.deleteOnExit();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+                buf = raf.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            buf.putInt(0, nkeys);
+            buf.putInt(4, nfeats);
+            bloom = new BloomFilter(nkeys, BLOOM_BITS);
+        }
+
+        public void putKey(int j, long k, int start) {
+            buf.putLong(8 + j*8, k);
+            buf.putInt(_startsOff + j*4, start);
+            bloom.add(k);
+        }
+
+        public void putFeat(int i, char kind, int name) {
+            buf.putInt(_namesOff + i*4, name);
+            buf.put(_kindsOff + i, (byte)kind);
+        }
+
+        // finish: ends the last key.
+        public void finish() {
+            buf.putInt(_startsOff + nkeys*4, nfeats);
+        }
+
+        public long getKey(int j) {
+            return buf.getLong(8 + j*8);
+        }
+
+        public int getStart(int j) {
+            return buf.getInt(_startsOff + j*4);
+        }
+
+        public int getName(int i) {
+            return buf.getInt(_namesOff + i*4);
+        }
+
+        public char getKind(int i) {
+            return (char)buf.get(_kindsOff + i);
+        }
+
+        // find: returns the index of a key, or -1.
+        public int find(long k) {
+            if (!bloom.mightContain(k)) return -1;
+            int lo = 0;
+            int hi = nkeys-1;
+            while (lo <= hi) {
+                int mid = (lo+hi) >>> 1;
+                long k1 = getKey(mid);
+                if (k1 < k) {
+                    lo = mid+1;
+                } else if (k < k1) {
+                    hi = mid-1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        // findFeat: returns the index of the key of a feature.
+        public int findFeat(int i) {
+            int lo = 0;
+            int hi = nkeys-1;
+            while (lo < hi) {
+                int mid = (lo+hi+1) >>> 1;
+                if (getStart(mid) <= i) {
+                    lo = mid;
+                } else {
+                    hi = mid-1;
+                }
+            }
+            return lo;
+        }
+
+        public void delete() {
+            buf = null;
+            file.delete();
+        }
+    }
+
+    private long _budget;
+    private List<Run> _runs = new ArrayList<Run>();
+    private int _ndisk = 0;
+    private long _bloomSize = 0;
+
+    // SpillFeatureSet(symbols, budget): budget is the number of bytes
+    //   that the features can use in the heap.
+    public SpillFeatureSet(SymbolTable symbols, long budget) {
+        super(symbols);
+        _budget = budget;
+    }
+
+    // getRunCount: returns the number of the runs on the disk.
+    public int getRunCount() {
+        return _runs.size();
+    }
+
+    @Override
+    public int size() {
+        // Keys in several tiers are counted more than once.
+        int n = super.size();
+        for (Run run : _runs) {
+            n += run.nkeys;
+        }
+        return n;
+    }
+
+    @Override
+    public int getFeatCount() {
+        return _ndisk + super.getFeatCount();
+    }
+
+    @Override
+    public long getMemorySize() {
+        return super.getMemorySize() + _bloomSize;
+    }
+
+    @Override
+    public void add(long k, char kind, int name) {
+        super.add(k, kind, name);
+        long budget = _budget - _bloomSize - getSymbols().getMemorySize();
+        if (Math.max(budget, MIN_HOT) < super.getMemorySize() ||
+            MAX_RUN_FEATS <= super.getFeatCount()) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public int first(long k) {
+        if (k < 0) return -1;
+        return findFrom(0, k);
+    }
+
+    @Override
+    public int next(int i) {
+        if (HOT <= i) {
+            int j = super.next(i-HOT);
+            return (j < 0)? -1 : HOT+j;
+        }
+        int r = getRun(i);
+        Run run = _runs.get(r);
+        int f = i - run.base;
+        int j = run.findFeat(f);
+        if (f+1 < run.getStart(j+1)) return i+1;
+        return findFrom(r+1, run.getKey(j));
+    }
+
+    @Override
+    public char getFeatKind(int i) {
+        if (HOT <= i) return super.getFeatKind(i-HOT);
+        Run run = _runs.get(getRun(i));
+        return run.getKind(i - run.base);
+    }
+
+    @Override
+    public int getFeatName(int i) {
+        if (HOT <= i) return super.getFeatName(i-HOT);
+        Run run = _runs.get(getRun(i));
+        return run.getName(i - run.base);
+    }
+
+    @Override
+    public long[] getKeys() {
+        long[] keys = super.getKeys();
+        int n = keys.length;
+        for (Run run : _runs) {
+            keys = Arrays.copyOf(keys, n + run.nkeys);
+            for (int j = 0; j < run.nkeys; j++) {
+                keys[n++] = run.getKey(j);
+            }
+        }
+        Arrays.sort(keys);
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+            if (m == 0 || keys[m-1] != keys[j]) {
+                keys[m++] = keys[j];
+            }
+        }
+        return Arrays.copyOf(keys, m);
+    }
+
+    // findFrom: returns the first feature of a key from the r-th run.
+    private int findFrom(int r, long k) {
+        for (; r < _runs.size(); r++) {
+            Run run = _runs.get(r);
+            int j = run.find(k);
+            if (0 <= j) return run.base + run.getStart(j);
+        }
+        int j = super.first(k);
+        return (j < 0)? -1 : HOT+j;
+    }
+
+    // getRun: returns the run of a feature.
+    private int getRun(int i) {
+        int r = _runs.size()-1;
+        while (i < _runs.get(r).base) {
+            r--;
+        }
+        return r;
+    }
+
+    // spill: writes the hot tier into a new run.
+    private void spill()
+        throws IOException {
+        long[] keys = super.getKeys();
+        Arrays.sort(keys);
+        int nfeats = super.getFeatCount();
+        Run run = new Run(keys.length, nfeats);
+        int i = 0;
+        for (int j = 0; j < keys.length; j++) {
+            run.putKey(j, keys[j], i);
+            for (int f = super.first(keys[j]); 0 <= f; f = super.next(f)) {
+                run.putFeat(i++, super.getFeatKind(f), super.getFeatName(f));
+            }
+        }
+        run.finish();
+        super.clear();
+        addRun(run);
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Spilled features:", run.file, keys.length, nfeats);
+        }
+        merge();
+    }
+
+    private void addRun(Run run) {
+        if (HOT - _ndisk <= run.nfeats) {
+            throw new IllegalStateException("Too many features");
+        }
+        run.base = _ndisk;
+        _ndisk += run.nfeats;
+        _bloomSize += run.bloom.getMemorySize();
+        _runs.add(run);
+    }
+
+    // merge: merges the newest runs into one if they are
+    //   as large as the run before them.
+    private void merge()
+        throws IOException {
+        int start = _runs.size()-1;
+        int nfeats = _runs.get(start).nfeats;
+        while (0 < start) {
+            int n = _runs.get(start-1).nfeats;
+            if (nfeats < n || MAX_RUN_FEATS < nfeats + n) break;
+            start--;
+            nfeats += n;
+        }
+        if (_runs.size() - start < 2) return;
+        List<Run> runs = new ArrayList<Run>(_runs.subList(start, _runs.size()));
+        // Count the distinct keys.
+        int[] pos = new int[runs.size()];
+        int nkeys = 0;
+        while (0 <= nextKey(runs, pos, true)) {
+            nkeys++;
+        }
+        Run merged = new Run(nkeys, nfeats);
+        Arrays.fill(pos, 0);
+        int i = 0;
+        for (int j = 0; j < nkeys; j++) {
+            long k = nextKey(runs, pos, false);
+            merged.putKey(j, k, i);
+            // Older runs first.
+            for (int r = 0; r < runs.size(); r++) {
+                Run run = runs.get(r);
+                if (run.nkeys <= pos[r] || run.getKey(pos[r]) != k) continue;
+                for (int f = run.getStart(pos[r]);
+                     f < run.getStart(pos[r]+1); f++) {
+                    merged.putFeat(i++, run.getKind(f), run.getName(f));
+                }
+                pos[r]++;
+            }
+        }
+        merged.finish();
+        _runs.subList(start, _runs.size()).clear();
+        _ndisk = (start == 0)? 0 : _runs.get(start-1).base + _runs.get(start-1).nfeats;
+        for (Run run : runs) {
+            _bloomSize -= run.bloom.getMemorySize();
+            run.delete();
+        }
+        addRun(merged);
+        if (Logger.isInfoEnabled()) {
+            Logger.info("Merged runs:", runs.size(), nkeys, nfeats);
+        }
+    }
+
+    // nextKey: returns the smallest key at the positions, or -1.
+    //   If skip is true, the positions are moved past the key.
+    private static long nextKey(List<Run> runs, int[] pos, boolean skip) {
+        long k = -1;
+        for (int r = 0; r < runs.size(); r++) {
+            Run run = runs.get(r);
+            if (pos[r] < run.nkeys) {
+                long k1 = run.getKey(pos[r]);
+                if (k < 0 || k1 < k) {
+                    k = k1;
+                }
+            }
+        }
+        if (skip && 0 <= k) {
+            for (int r = 0; r < runs.size(); r++) {
+                Run run = runs.get(r);
+                if (pos[r] < run.nkeys && run.getKey(pos[r]) == k) {
+                    pos[r]++;
+                }
+            }
+        }
+        return k;
+    }
+}
@@ -0,0 +1,237 @@
+//  Stats.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+//  Stats
+//  Records the timings and counters of each file and of the whole run,
+//  and writes them as JSON, or as CSV if the path ends with ".csv".
+//  Times are in milliseconds. Pass 1 and Pass 2 times do not include
+//  reading and parsing. A throughput line can be written periodically.
+//
+class Stats {
+
+    //  FileStats
+    //  Updated by one worker at a time.
+    //
+    public static class FileStats {
+        public String path;
+        public long bytes = 0;
+        public int nodes = 0;
+        public long readTime = 0;
+        public long parseTime = 0;
+        public long pass1Time = 0;
+        public long pass2Time = 0;
+        public int hits = 0;
+        public int misses = 0;
+        public int cacheHits = 0;
+        public int cacheMisses = 0;
+        public FileStats(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final String[] COLUMNS = {
+        "path", "bytes", "nodes", "read_ms", "parse_ms",
+        "pass1_ms", "pass2_ms", "hits", "misses",
+        "cache_hits", "cache_misses",
+    };
+
+    private Map<String, FileStats> _files =
+        new ConcurrentHashMap<String, FileStats>();
+    private List<FileStats> _order =
+        Collections.synchronizedList(new ArrayList<FileStats>());
+    private AtomicInteger _pass1Files = new AtomicInteger();
+    private AtomicInteger _pass2Files = new AtomicInteger();
+    private AtomicLong _bytes = new AtomicLong();
+    // Totals of the run, in order.
+    private Map<String, Object> _totals = new LinkedHashMap<String, Object>();
+    private long _start = System.nanoTime();
+    private long _passStart = _start;
+    private Thread _reporter = null;
+
+    // getFile: returns the stats of a file.
+    public FileStats getFile(String path) {
+        FileStats stats = _files.get(path);
+        if (stats == null) {
+            FileStats stats1 = new FileStats(path);
+            stats = _files.putIfAbsent(path, stats1);
+            if (stats == null) {
+                stats = stats1;
+                _order.add(stats);
+            }
+        }
+        return stats;
+    }
+
+    public void countPass1(FileStats stats) {
+        _pass1Files.incrementAndGet();
+        _bytes.addAndGet(stats.bytes);
+    }
+
+    public void countPass2(FileStats stats) {
+        _pass2Files.incrementAndGet();
+    }
+
+    // addPass2: records the extraction of def-uses from a file.
+    public void addPass2(String path, long time, DefUseExtractor extractor) {
+        FileStats fs = getFile(path);
+        fs.pass2Time += time;
+        fs.nodes = Math.max(fs.nodes, extractor.getNodeCount());
+        fs.hits += extractor.getHits();
+        fs.misses += extractor.getMisses();
+        fs.cacheHits += extractor.getCacheHits();
+        fs.cacheMisses += extractor.getCacheMisses();
+        countPass2(fs);
+    }
+
+    // startPass/endPass: records the time of a pass.
+    public synchronized void startPass() {
+        _passStart = System.nanoTime();
+    }
+    public synchronized void endPass(String name) {
+        _totals.put(name+"_ms", toMillis(System.nanoTime() - _passStart));
+    }
+
+    // put: records a total of the run.
+    public synchronized void put(String name, Object value) {
+        _totals.put(name, value);
+    }
+
+    // startReporter: writes the throughput every interval seconds.
+    public void startReporter(final int interval) {
+        _reporter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int files1 = 0, files2 = 0;
+                    long bytes = 0;
+                    try {
+                        while (true) {
+                            Thread.sleep(interval * 1000L);
+                            int f1 = _pass1Files.get();
+                            int f2 = _pass2Files.get();
+                            long b = _bytes.get();
+                            Logger.out.println(String.format(Locale.ROOT,
+                                "stats: pass1 %d files (%.1f files/s, %.1f KB/s),"+
+                                " pass2 %d files (%.1f files/s)",
+                                f1, (f1-files1)/(double)interval,
+                                (b-bytes)/1024.0/interval,
+                                f2, (f2-files2)/(double)interval));
+                            files1 = f1;
+                            files2 = f2;
+                            bytes = b;
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }, "Stats");
+        _reporter.setDaemon(true);
+        _reporter.start();
+    }
+
+    public void stopReporter() {
+        if (_reporter != null) {
+            _reporter.interrupt();
+            _reporter = null;
+        }
+    }
+
+    public void save(File file)
+        throws IOException {
+        put("total_ms", toMillis(System.nanoTime() - _start));
+        put("files", _order.size());
+        put("bytes", _bytes.get());
+        try (Writer out = new BufferedWriter(
+                 new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            if (file.getName().endsWith(".csv")) {
+                writeCSV(out);
+            } else {
+                writeJSON(out);
+            }
+        }
+        Logger.info("Saved stats:", file);
+    }
+
+    // writeCSV: writes a row for each file after the totals as comments.
+    private synchronized void writeCSV(Writer out)
+        throws IOException {
+        for (Map.Entry<String, Object> e : _totals.entrySet()) {
+            out.write("# "+e.getKey()+","+e.getValue()+"\n");
+        }
+        for (int i = 0; i < COLUMNS.length; i++) {
+            out.write(((0 < i)? "," : "")+COLUMNS[i]);
+        }
+        out.write("\n");
+        synchronized (_order) {
+            for (FileStats stats : _order) {
+                out.write(quoteCSV(stats.path));
+                for (Object v : getValues(stats)) {
+                    out.write(","+v);
+                }
+                out.write("\n");
+            }
+        }
+    }
+
+    private synchronized void writeJSON(Writer out)
+        throws IOException {
+        out.write("{\n");
+        for (Map.Entry<String, Object> e : _totals.entrySet()) {
+            out.write("  "+quoteJSON(e.getKey())+": "+e.getValue()+",\n");
+        }
+        out.write("  \"file_stats\": [");
+        synchronized (_order) {
+            String sep = "\n";
+            for (FileStats stats : _order) {
+                out.write(sep+"    {\"path\": "+quoteJSON(stats.path));
+                Object[] values = getValues(stats);
+                for (int i = 0; i < values.length; i++) {
+                    out.write(", \""+COLUMNS[i+1]+"\": "+values[i]);
+                }
+                out.write("}");
+                sep = ",\n";
+            }
+        }
+        out.write("\n  ]\n}\n");
+    }
+
+    private static Object[] getValues(FileStats stats) {
+        return new Object[] {
+            stats.bytes, stats.nodes,
+            toMillis(stats.readTime), toMillis(stats.parseTime),
+            toMillis(stats.pass1Time), toMillis(stats.pass2Time),
+            stats.hits, stats.misses,
+            stats.cacheHits, stats.cacheMisses,
+        };
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quoteCSV(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 &&
+            s.indexOf('\n') < 0) return s;
+        return "\""+s.replace("\"", "\"\"")+"\"";
+    }
+
+    private static String quoteJSON(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\');
+                b.append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int)c));
+            } else {
+                b.append(c);
+            }
+        }
+        b.append('"');
+        return b.toString();
+    }
+}
@@ -0,0 +1,61 @@
+//  StringTable.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+
+//  StringTable
+//  Writes each distinct string once and refers to it by its index.
+//  A string is written as varint 0 followed by its UTF form when it
+//  first appears, and as varint (index+1) afterwards.
+//
+class StringTable {
+
+    private Map<String, Integer> _index = new HashMap<String, Integer>();
+    private List<String> _strings = new ArrayList<String>();
+
+    public void write(DataOutput out, String s)
+        throws IOException {
+        Integer i = _index.get(s);
+        if (i != null) {
+            Utils.writeVarInt(out, i+1);
+        } else {
+            _index.put(s, _strings.size());
+            _strings.add(s);
+            Utils.writeVarInt(out, 0);
+            out.writeUTF(s);
+        }
+    }
+
+    public String read(DataInput in)
+        throws IOException {
+        int i = Utils.readVarInt(in);
+        if (i == 0) {
+            String s = in.readUTF();
+            _strings.add(s);
+            return s;
+        }
+        if (_strings.size() < i) {
+            throw new IOException("Invalid string index: "+i);
+        }
+        return _strings.get(i-1);
+    }
+
+    public void writeScope(DataOutput out, SymbolTable symbols, int scope)
+        throws IOException {
+        String[] path = symbols.getScopePath(scope);
+        Utils.writeVarInt(out, path.length);
+        for (String name : path) {
+            write(out, name);
+        }
+    }
+
+    public int readScope(DataInput in, SymbolTable symbols)
+        throws IOException {
+        String[] path = new String[Utils.readVarInt(in)];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = read(in);
+        }
+        return symbols.getScope(path);
+    }
+}
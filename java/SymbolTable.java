@@ -0,0 +1,165 @@
+//  SymbolTable.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//  SymbolTable
+//  Interns identifiers and namespaces as integer ids.
+//  A namespace is a pair of its parent id (-1 for none) and its name id.
+//  The table is shared by all the workers.
+//
+class SymbolTable {
+
+    private Map<String, Integer> _symbols =
+        new ConcurrentHashMap<String, Integer>();
+    // Names are only appended under the lock, so that a reader
+    // who obtained an id can always find it in the latest array.
+    private volatile String[] _names = new String[1024];
+    private int _nnames = 0;
+
+    private Map<Long, Integer> _scopes =
+        new ConcurrentHashMap<Long, Integer>();
+    private List<Scope> _scopeList = new ArrayList<Scope>();
+
+    // Approximate number of bytes used, updated under the lock.
+    private volatile long _memorySize = 0;
+
+    // Namespaces of a type name, i.e. "T"+name at the top level.
+    private Map<String, Integer> _types =
+        new ConcurrentHashMap<String, Integer>();
+
+    private static class Scope {
+        int parent;
+        int name;
+        String qname;
+    }
+
+    // intern: returns the id of a string, or -1 for null.
+    public int intern(String s) {
+        if (s == null) return -1;
+        Integer id = _symbols.get(s);
+        if (id != null) return id;
+        synchronized (this) {
+            id = _symbols.get(s);
+            if (id == null) {
+                String[] names = _names;
+                if (_nnames == names.length) {
+                    names = Arrays.copyOf(names, names.length*2);
+                }
+                id = _nnames++;
+                names[id] = s;
+                _names = names;
+                _symbols.put(s, id);
+                // String, map entry and array slot.
+                _memorySize += 100 + s.length();
+            }
+        }
+        return id;
+    }
+
+    // find: returns the id of a string, or -1 if it is not interned.
+    public int find(String s) {
+        if (s == null) return -1;
+        Integer id = _symbols.get(s);
+        return (id == null)? -1 : id;
+    }
+
+    public String getName(int id) {
+        return _names[id];
+    }
+
+    public synchronized int size() {
+        return _nnames;
+    }
+
+    // getMemorySize: returns the approximate number of bytes used.
+    public long getMemorySize() {
+        return _memorySize;
+    }
+
+    // getScope: returns the id of a namespace.
+    public int getScope(int parent, int name) {
+        if (name < 0) return -1;
+        Long k = (((long)parent) << 32) | (name & 0xffffffffL);
+        Integer id = _scopes.get(k);
+        if (id != null) return id;
+        synchronized (this) {
+            id = _scopes.get(k);
+            if (id == null) {
+                Scope scope = new Scope();
+                scope.parent = parent;
+                scope.name = name;
+                id = _scopeList.size();
+                _scopeList.add(scope);
+                _scopes.put(k, id);
+                // Scope, map entry and list slot.
+                _memorySize += 120;
+            }
+        }
+        return id;
+    }
+
+    // findScope: returns the id of a namespace, or -1 if it is not interned.
+    public int findScope(int parent, int name) {
+        if (name < 0) return -1;
+        Integer id = _scopes.get((((long)parent) << 32) | (name & 0xffffffffL));
+        return (id == null)? -1 : id;
+    }
+
+    public int getScope(String[] path) {
+        int scope = -1;
+        for (String name : path) {
+            scope = getScope(scope, intern(name));
+        }
+        return scope;
+    }
+
+    // getTypeScope: returns the namespace "T"+name at the top level.
+    public int getTypeScope(String name) {
+        if (name == null) return -1;
+        Integer id = _types.get(name);
+        if (id == null) {
+            id = getScope(-1, intern("T"+name));
+            _types.put(name, id);
+        }
+        return id;
+    }
+
+    public synchronized int getScopeParent(int scope) {
+        return _scopeList.get(scope).parent;
+    }
+
+    // getScopeIdent: returns the name id of a namespace.
+    public synchronized int getScopeIdent(int scope) {
+        return _scopeList.get(scope).name;
+    }
+
+    public synchronized String[] getScopePath(int scope) {
+        List<String> a = new ArrayList<String>();
+        while (0 <= scope) {
+            Scope s = _scopeList.get(scope);
+            a.add(_names[s.name]);
+            scope = s.parent;
+        }
+        Collections.reverse(a);
+        String[] path = new String[a.size()];
+        a.toArray(path);
+        return path;
+    }
+
+    // getScopeName: returns the dotted name of a namespace.
+    public synchronized String getScopeName(int scope) {
+        Scope s = _scopeList.get(scope);
+        if (s.qname == null) {
+            String name = _names[s.name];
+            if (s.parent < 0) {
+                s.qname = name;
+            } else {
+                s.qname = getScopeName(s.parent)+"."+name;
+            }
+        }
+        return s.qname;
+    }
+}
@@ -42,6 +42,26 @@ class Utils {
         return b.toString();
     }
 
+    public static void writeVarInt(DataOutput out, int v)
+        throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    public static int readVarInt(DataInput in)
+        throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Invalid varint");
+    }
+
     public static String typeName(Type type) {
         if (type instanceof SimpleType) {
             Name name = ((SimpleType)type).getName();
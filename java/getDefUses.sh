@@ -1,8 +1,22 @@
 #!/bin/sh
 # usage:
 #   ./getUses.sh [opts] *.java
+#   MAIN=getIdents.DefUseServer ./getUses.sh [opts]
+#   NOCDS=1 ./getUses.sh [opts] *.java   (ignores the AppCDS archive)
 BASEDIR="${0%/*}/.."
 LIBDIR="${BASEDIR}/lib"
+CDSDIR="${BASEDIR}/target/cds"
+JAVA_OPTS="${JAVA_OPTS:-}"
+MAIN="${MAIN:-getIdents.DefUseExtractor}"
+if [ -z "$NOCDS" -a -f "${CDSDIR}/getidents.jar" ] &&
+   [ -z "$(find "${BASEDIR}/java" -name '*.java' -newer "${CDSDIR}/getidents.jar")" ]; then
+  # Use the classes archived by "ant cds", which include all the jars,
+  # unless the sources have been changed since.
+  if [ "${CDSDIR}/getidents.jsa" -nt "${CDSDIR}/getidents.jar" ]; then
+    JAVA_OPTS="${JAVA_OPTS} -XX:SharedArchiveFile=${CDSDIR}/getidents.jsa"
+  fi
+  exec java ${JAVA_OPTS} -cp "${CDSDIR}/getidents.jar" -ea "$MAIN" "$@"
+fi
 CLASSPATH="${BASEDIR}/target"
 CLASSPATH="${CLASSPATH}:${LIBDIR}/junit-4.12.jar"
 CLASSPATH="${CLASSPATH}:${LIBDIR}/org.eclipse.jdt.core-3.12.3.jar"
@@ -19,4 +33,4 @@ CLASSPATH="${CLASSPATH}:${LIBDIR}/org.eclipse.equinox.app-1.3.400.jar"
 CLASSPATH="${CLASSPATH}:${LIBDIR}/org.eclipse.core.filesystem-1.6.1.jar"
 CLASSPATH="${CLASSPATH}:${LIBDIR}/org.eclipse.text-3.6.0.jar"
 CLASSPATH="${CLASSPATH}:${LIBDIR}/org.eclipse.core.commands-3.8.1.jar"
-exec java -cp "$CLASSPATH" -ea getIdents.DefUseExtractor "$@"
+exec java ${JAVA_OPTS} -cp "$CLASSPATH" -ea "$MAIN" "$@"
@@ -0,0 +1,52 @@
+#!/bin/sh
+# usage:
+#   ./getDefUsesSharded.sh nshards [opts] *.java > output
+#   ./getDefUsesSharded.sh nshards [opts] -i files.lst > output
+# Runs Pass 1 of each shard in its own process, merges the features
+# and runs Pass 2 of each shard against them. JAVA_OPTS is passed to
+# every process, e.g. JAVA_OPTS=-Xmx2g. Only the text format can be
+# concatenated, so -b is not supported.
+BINDIR="${0%/*}"
+RUN="${BINDIR}/getDefUses.sh"
+export MAIN=getIdents.DefUseExtractor
+NSHARDS="$1"
+shift
+TMPDIR="$(mktemp -d)" || exit 1
+trap 'rm -rf "$TMPDIR"' EXIT
+
+# run_shards pass opts...: runs a pass of every shard in parallel.
+run_shards() {
+  pass="$1"
+  shift
+  pids=""
+  k=0
+  while [ $k -lt $NSHARDS ]; do
+    if [ "$pass" = 1 ]; then
+      "$RUN" -k "$k/$NSHARDS" -p "$TMPDIR/part$k.idx" "$@" &
+    else
+      "$RUN" -k "$k/$NSHARDS" -x "$TMPDIR/all.idx" -o "$TMPDIR/out$k" "$@" &
+    fi
+    pids="$pids $!"
+    k=$((k+1))
+  done
+  status=0
+  for pid in $pids; do
+    wait $pid || status=1
+  done
+  return $status
+}
+
+run_shards 1 "$@" || exit 1
+PARTS=""
+k=0
+while [ $k -lt $NSHARDS ]; do
+  PARTS="$PARTS $TMPDIR/part$k.idx"
+  k=$((k+1))
+done
+MAIN=getIdents.FeatureIndex "$RUN" -f -o "$TMPDIR/all.idx" $PARTS || exit 1
+run_shards 2 "$@" || exit 1
+k=0
+while [ $k -lt $NSHARDS ]; do
+  cat "$TMPDIR/out$k"
+  k=$((k+1))
+done
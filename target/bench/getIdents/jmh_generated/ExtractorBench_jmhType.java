@@ -0,0 +1,4 @@
+package getIdents.jmh_generated;
+public class ExtractorBench_jmhType extends ExtractorBench_jmhType_B3 {
+}
+
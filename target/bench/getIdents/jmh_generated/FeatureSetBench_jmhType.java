@@ -0,0 +1,4 @@
+package getIdents.jmh_generated;
+public class FeatureSetBench_jmhType extends FeatureSetBench_jmhType_B3 {
+}
+
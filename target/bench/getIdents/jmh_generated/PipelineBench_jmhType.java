@@ -0,0 +1,4 @@
+package getIdents.jmh_generated;
+public class PipelineBench_jmhType extends PipelineBench_jmhType_B3 {
+}
+
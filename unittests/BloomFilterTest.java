@@ -0,0 +1,48 @@
+//  BloomFilterTest.java
+//
+package getIdents;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  BloomFilterTest
+//
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter bloom = new BloomFilter(10000, 10);
+        Random rnd = new Random(0);
+        long[] keys = new long[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rnd.nextLong();
+            bloom.add(keys[i]);
+        }
+        for (long k : keys) {
+            assertTrue(bloom.mightContain(k));
+        }
+    }
+
+    @Test
+    public void testFalsePositives() {
+        BloomFilter bloom = new BloomFilter(10000, 10);
+        // Keys that differ in a few low bits, as feature keys do.
+        for (long k = 0; k < 10000; k++) {
+            bloom.add((1L << 56) | k);
+        }
+        int n = 0;
+        for (long k = 10000; k < 110000; k++) {
+            if (bloom.mightContain((1L << 56) | k)) {
+                n++;
+            }
+        }
+        // About 1% with 10 bits per key.
+        assertTrue("false positives: "+n, n < 3000);
+    }
+
+    @Test
+    public void testMemorySize() {
+        // Rounded up to a power of two bits.
+        assertEquals(16384, new BloomFilter(10000, 10).getMemorySize());
+    }
+}
@@ -0,0 +1,155 @@
+//  DefUseBinaryTest.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  DefUseBinaryTest
+//  The binary format read by DefUseReader must give the same
+//  text as DefUseWriter writes directly.
+//
+public class DefUseBinaryTest {
+
+    //  Block
+    //  A file and its groups of def-uses.
+    //
+    private static class Block {
+        public String path;
+        public List<DefUse[]> groups = new ArrayList<DefUse[]>();
+        public Block(String path) {
+            this.path = path;
+        }
+        public Block add(String... words) {
+            DefUse[] group = new DefUse[words.length];
+            for (int i = 0; i < words.length; i++) {
+                group[i] = DefUse.create(words[i].charAt(0), words[i].substring(1));
+            }
+            groups.add(group);
+            return this;
+        }
+        public void send(DefUseSink sink) {
+            sink.startFile(path);
+            for (DefUse[] group : groups) {
+                sink.add(group);
+            }
+            sink.endFile(path);
+        }
+    }
+
+    private static List<Block> getBlocks() {
+        List<Block> blocks = new ArrayList<Block>();
+        blocks.add(new Block("a/Foo.java")
+                   .add("TFoo")
+                   .add("FgetFoo", "rFoo", "vfoo")
+                   .add()
+                   .add("VfooBar", "ufooBar", "vfooBar", "afooBar"));
+        // Strings are not shared between blocks.
+        blocks.add(new Block("a/Bar.java")
+                   .add("TFoo", "eFoo")
+                   .add("TCaf\u00e9", "V\ud835\udc65"));
+        blocks.add(new Block("empty.java"));
+        // More strings than a one-byte index.
+        Block b = new Block("many.java");
+        for (int i = 0; i < 300; i++) {
+            b.add("vname"+i, "fname"+(i % 7));
+        }
+        blocks.add(b);
+        // A string longer than a one-byte length.
+        char[] c = new char[1000];
+        Arrays.fill(c, 'x');
+        blocks.add(new Block("long.java").add("v"+new String(c)));
+        return blocks;
+    }
+
+    private static byte[] writeText(List<Block> blocks)
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DefUseWriter out = new DefUseWriter(b, 64);
+        for (Block block : blocks) {
+            block.send(out);
+        }
+        out.close();
+        return b.toByteArray();
+    }
+
+    private static byte[] writeBinary(List<Block> blocks)
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DefUseBinaryWriter out = new DefUseBinaryWriter(b, 64);
+        out.writeHeader();
+        for (Block block : blocks) {
+            block.send(out);
+        }
+        out.close();
+        return b.toByteArray();
+    }
+
+    private static byte[] toText(byte[] data)
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DefUseWriter out = new DefUseWriter(b);
+        DefUseReader reader = new DefUseReader(new ByteArrayInputStream(data));
+        while (reader.read(out)) { }
+        reader.close();
+        out.close();
+        return b.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip()
+        throws IOException {
+        List<Block> blocks = getBlocks();
+        assertArrayEquals(writeText(blocks), toText(writeBinary(blocks)));
+    }
+
+    @Test
+    public void testWriteLines()
+        throws IOException {
+        // Formatted lines are encoded as the same groups.
+        List<Block> blocks = getBlocks();
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DefUseBinaryWriter out = new DefUseBinaryWriter(b);
+        out.writeHeader();
+        for (Block block : blocks) {
+            List<String> lines = new ArrayList<String>();
+            for (DefUse[] group : block.groups) {
+                lines.add(DefUseExtractor.getLine(group));
+            }
+            out.writeLines(block.path, lines);
+        }
+        out.close();
+        assertArrayEquals(writeBinary(blocks), b.toByteArray());
+    }
+
+    @Test
+    public void testWriteBlock()
+        throws IOException {
+        // Blocks encoded separately are concatenated as they are.
+        List<Block> blocks = getBlocks();
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DefUseBinaryWriter out = new DefUseBinaryWriter(b, 16);
+        out.writeHeader();
+        for (Block block : blocks) {
+            byte[] data = writeBinary(Collections.singletonList(block));
+            // Skip the header.
+            out.writeBlock(Arrays.copyOfRange(data, 5, data.length));
+        }
+        out.close();
+        assertArrayEquals(writeBinary(blocks), b.toByteArray());
+    }
+
+    @Test(expected=IOException.class)
+    public void testInvalidMagic()
+        throws IOException {
+        toText("+ Foo.java\n".getBytes("UTF-8"));
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncated()
+        throws IOException {
+        byte[] data = writeBinary(getBlocks());
+        toText(Arrays.copyOf(data, data.length-1));
+    }
+}
@@ -0,0 +1,139 @@
+//  FrozenFeatureSetTest.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  FrozenFeatureSetTest
+//  A frozen index opened with another SymbolTable (as by another
+//  process) must return the features of the saved FeatureSet.
+//
+public class FrozenFeatureSetTest {
+
+    private SymbolTable _symbols;
+    private FeatureSet _expected;
+    private File _file;
+
+    @Before
+    public void setUp()
+        throws IOException {
+        _symbols = new SymbolTable();
+        _expected = new FeatureSet(_symbols);
+        Random rnd = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            // Nested namespaces, e.g. "pkg3.TFoo1.Mbar2".
+            String[] path = new String[1 + i % 4];
+            path[0] = "pkg"+(i % 7);
+            for (int j = 1; j < path.length; j++) {
+                path[j] = "TMB".charAt(j-1)+"x\u00e9"+(i % (11*j));
+            }
+            int scope = _symbols.getScope(path);
+            long k = FeatureSet.getKey(
+                "vfm".charAt(i % 3), scope, _symbols.intern("name"+(i % 13)));
+            for (int n = rnd.nextInt(3); 0 <= n; n--) {
+                char kind = (rnd.nextBoolean())? FeatureSet.TYPE : FeatureSet.VAR;
+                _expected.add(k, kind, _symbols.intern("Type"+rnd.nextInt(50)));
+            }
+        }
+        _file = File.createTempFile("getidents", ".idx");
+        FrozenFeatureSet.save(_file, _expected);
+    }
+
+    @After
+    public void tearDown() {
+        _file.delete();
+    }
+
+    // getFeats: returns the features of a key as strings.
+    private static List<String> getFeats(FeatureSet fset, long k) {
+        List<String> feats = new ArrayList<String>();
+        SymbolTable symbols = fset.getSymbols();
+        for (int i = fset.first(k); 0 <= i; i = fset.next(i)) {
+            feats.add(fset.getFeatKind(i)+symbols.getName(fset.getFeatName(i)));
+        }
+        return feats;
+    }
+
+    // findKey: looks up a key of the expected set in another set.
+    private long findKey(FeatureSet fset, long k) {
+        int scope = -1;
+        for (String name : _symbols.getScopePath(FeatureSet.getScope(k))) {
+            scope = fset.findScope(scope, fset.findName(name));
+        }
+        int ident = fset.findName(_symbols.getName(FeatureSet.getIdent(k)));
+        return FeatureSet.getKey(FeatureSet.getKind(k), scope, ident);
+    }
+
+    @Test
+    public void testFeatures()
+        throws IOException {
+        FrozenFeatureSet frozen = new FrozenFeatureSet(new SymbolTable(), _file);
+        assertEquals(_expected.size(), frozen.size());
+        assertEquals(_expected.getFeatCount(), frozen.getFeatCount());
+        for (long k : _expected.getKeys()) {
+            long k1 = findKey(frozen, k);
+            assertTrue(0 <= k1);
+            assertEquals(getFeats(_expected, k), getFeats(frozen, k1));
+        }
+    }
+
+    @Test
+    public void testInterned()
+        throws IOException {
+        // Keys with the ids of a SymbolTable that has other names.
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 100; i++) {
+            symbols.intern("other"+i);
+        }
+        FrozenFeatureSet frozen = new FrozenFeatureSet(symbols, _file);
+        for (long k : _expected.getKeys()) {
+            int scope = symbols.getScope(
+                _symbols.getScopePath(FeatureSet.getScope(k)));
+            int ident = symbols.intern(_symbols.getName(FeatureSet.getIdent(k)));
+            long k1 = FeatureSet.getKey(FeatureSet.getKind(k), scope, ident);
+            assertEquals(getFeats(_expected, k), getFeats(frozen, k1));
+        }
+    }
+
+    @Test
+    public void testMissing()
+        throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        FrozenFeatureSet frozen = new FrozenFeatureSet(symbols, _file);
+        // Names that are not in the index are not interned.
+        assertEquals(-1, frozen.findName("nosuch"));
+        assertEquals(0, symbols.size());
+        int pkg = frozen.findScope(-1, frozen.findName("pkg0"));
+        assertTrue(0 <= pkg);
+        assertEquals(-1, frozen.findScope(pkg, frozen.findName("pkg1")));
+        assertEquals(-1, frozen.first(FeatureSet.getKey(
+            'v', pkg, symbols.intern("nosuch"))));
+    }
+
+    @Test
+    public void testGetKeys()
+        throws IOException {
+        FrozenFeatureSet frozen = new FrozenFeatureSet(new SymbolTable(), _file);
+        // The keys are translated into the SymbolTable.
+        FeatureSet copy = new FeatureSet(frozen.getSymbols());
+        copy.addAll(frozen);
+        for (long k : _expected.getKeys()) {
+            assertEquals(getFeats(_expected, k), getFeats(copy, findKey(copy, k)));
+        }
+    }
+
+    @Test
+    public void testIsFrozen()
+        throws IOException {
+        assertTrue(FrozenFeatureSet.isFrozen(_file));
+        File file = File.createTempFile("getidents", ".idx");
+        try {
+            FeatureIndex.save(file, _expected);
+            assertFalse(FrozenFeatureSet.isFrozen(file));
+        } finally {
+            file.delete();
+        }
+    }
+}
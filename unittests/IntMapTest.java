@@ -0,0 +1,42 @@
+//  IntMapTest.java
+//
+package getIdents;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  IntMapTest
+//
+public class IntMapTest {
+
+    @Test
+    public void testPutGet() {
+        IntMap map = new IntMap();
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Random rnd = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            int k = rnd.nextInt(50000);
+            map.put(k, i);
+            expected.put(k, i);
+        }
+        assertEquals(expected.size(), map.size());
+        for (int k = 0; k < 50000; k++) {
+            Integer v = expected.get(k);
+            assertEquals((v == null)? -1 : v.intValue(), map.get(k));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        IntMap map = new IntMap(4);
+        for (int k = 0; k < 100; k++) {
+            map.put(k, k);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(10));
+        map.put(10, 1);
+        assertEquals(1, map.get(10));
+        assertEquals(1, map.size());
+    }
+}
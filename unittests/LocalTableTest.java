@@ -0,0 +1,57 @@
+//  LocalTableTest.java
+//
+package getIdents;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  LocalTableTest
+//
+public class LocalTableTest {
+
+    @Test
+    public void testShadowing() {
+        LocalTable locals = new LocalTable();
+        locals.push();
+        locals.declare(1, "int");
+        locals.declare(2, "String");
+        locals.push();
+        locals.declare(1, "long");
+        assertEquals("long", locals.lookup(1));
+        assertEquals("String", locals.lookup(2));
+        locals.pop();
+        assertEquals("int", locals.lookup(1));
+        locals.pop();
+        assertNull(locals.lookup(1));
+        assertNull(locals.lookup(2));
+    }
+
+    @Test
+    public void testSameFrame() {
+        // A later declaration in the same frame wins until it is popped.
+        LocalTable locals = new LocalTable();
+        locals.push();
+        locals.declare(1, "int");
+        locals.push();
+        locals.declare(1, "long");
+        locals.declare(1, "char");
+        assertEquals("char", locals.lookup(1));
+        locals.pop();
+        assertEquals("int", locals.lookup(1));
+    }
+
+    @Test
+    public void testGrow() {
+        LocalTable locals = new LocalTable();
+        for (int d = 0; d < 100; d++) {
+            locals.push();
+            for (int i = 0; i < 10; i++) {
+                locals.declare(i, "T"+d);
+            }
+        }
+        for (int d = 99; 0 <= d; d--) {
+            assertEquals("T"+d, locals.lookup(9));
+            locals.pop();
+        }
+        assertNull(locals.lookup(9));
+    }
+}
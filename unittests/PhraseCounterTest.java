@@ -0,0 +1,76 @@
+//  PhraseCounterTest.java
+//
+package getIdents;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  PhraseCounterTest
+//
+public class PhraseCounterTest {
+
+    private static List<String> split(String name) {
+        int[] bounds = new int[name.length()*2];
+        int n = PhraseCounter.splitWords(name, bounds);
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            words.add(name.substring(bounds[i*2], bounds[i*2+1]).toLowerCase());
+        }
+        return words;
+    }
+
+    @Test
+    public void testSplitWords() {
+        // Same as splitwords() of tools/phrases.py.
+        assertEquals(Arrays.asList("get", "foo", "bar"), split("getFooBar"));
+        assertEquals(Arrays.asList("http", "response"), split("HTTPResponse"));
+        assertEquals(Arrays.asList("get", "http", "response", "code"),
+                     split("getHTTPResponseCode"));
+        assertEquals(Arrays.asList("parse", "url2"), split("parseURL2"));
+        assertEquals(Arrays.asList("x", "y"), split("x_y"));
+        assertEquals(Arrays.asList("a1", "b"), split("a1b"));
+        assertEquals(Arrays.asList("init"), split("__init__"));
+        assertEquals(Arrays.asList("foo123"), split("foo123"));
+        assertEquals(Arrays.asList("ab", "cdef"), split("ABCdef"));
+        assertEquals(Arrays.asList(), split(""));
+    }
+
+    private static Map<String, String> count(PhraseCounter counter) {
+        Map<String, String> values = new HashMap<String, String>();
+        int n = counter.count();
+        for (int i = 0; i < n; i++) {
+            values.put(counter.getPhraseName(counter.getPhrase(i)),
+                       counter.getValue(i, PhraseCounter.T)+" "+
+                       counter.getValue(i, PhraseCounter.F)+" "+
+                       counter.getValue(i, PhraseCounter.V));
+        }
+        return values;
+    }
+
+    @Test
+    public void testCount() {
+        PhraseCounter counter = new PhraseCounter();
+        counter.add('T', "FooBar");
+        counter.add('r', "Foo");
+        counter.add('F', "getFooBar");
+        counter.add('v', "fooName");
+        counter.add('a', "fooName");
+        // Kinds without a category are ignored.
+        counter.add('z', "Foo");
+        Map<String, String> values = count(counter);
+        assertEquals(1, values.size());
+        assertEquals("1.0 1.0 1.0", values.get("foo"));
+        assertEquals(2, counter.getCatCount(PhraseCounter.T));
+        assertEquals(3, counter.getCatNum());
+
+        // Counts are not carried over to the next document.
+        counter.clear();
+        counter.add('T', "FooBar");
+        counter.add('T', "Baz");
+        counter.add('F', "fooBar");
+        values = count(counter);
+        assertEquals(2, counter.getCatNum());
+        assertEquals(3, values.size());
+        assertEquals("0.5 1.0 0.0", values.get("foo/bar"));
+    }
+}
@@ -0,0 +1,112 @@
+//  ReorderBufferTest.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  ReorderBufferTest
+//  Results must be taken in the order of submission, however the
+//  tasks finish, and the buffer must stay within its capacity.
+//
+public class ReorderBufferTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    private ExecutorService _pool;
+
+    @Before
+    public void setUp() {
+        _pool = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        _pool.shutdownNow();
+    }
+
+    // submit: submits a task that returns its number after a delay.
+    private static void submit(
+        ReorderBuffer buffer, ExecutorService pool,
+        final int seq, final int delay) {
+        buffer.submit(pool, new Callable<byte[]>() {
+                @Override
+                public byte[] call()
+                    throws InterruptedException {
+                    Thread.sleep(delay);
+                    byte[] b = new byte[BLOCK_SIZE];
+                    b[0] = (byte)(seq >> 8);
+                    b[1] = (byte)seq;
+                    return b;
+                }
+            });
+    }
+
+    private static int getSeq(byte[] b) {
+        return ((b[0] & 0xff) << 8) | (b[1] & 0xff);
+    }
+
+    @Test
+    public void testOrder()
+        throws IOException {
+        ReorderBuffer buffer = new ReorderBuffer(Long.MAX_VALUE);
+        Random rnd = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            submit(buffer, _pool, i, rnd.nextInt(5));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, getSeq(buffer.take()));
+        }
+        assertNull(buffer.take());
+    }
+
+    @Test
+    public void testCapacity()
+        throws IOException {
+        ReorderBuffer buffer = new ReorderBuffer(10*BLOCK_SIZE);
+        // The first task is the slowest, so the others fill the buffer.
+        submit(buffer, _pool, 0, 200);
+        for (int i = 1; i < 200; i++) {
+            submit(buffer, _pool, i, 0);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, getSeq(buffer.take()));
+        }
+        assertNull(buffer.take());
+        // The next result is added even when the buffer is full.
+        assertTrue(10*BLOCK_SIZE <= buffer.getMaxBytes());
+        assertTrue(11*BLOCK_SIZE >= buffer.getMaxBytes());
+    }
+
+    @Test
+    public void testEmpty()
+        throws IOException {
+        assertNull(new ReorderBuffer(0).take());
+    }
+
+    @Test
+    public void testError()
+        throws IOException {
+        ReorderBuffer buffer = new ReorderBuffer(BLOCK_SIZE);
+        submit(buffer, _pool, 0, 0);
+        buffer.submit(_pool, new Callable<byte[]>() {
+                @Override
+                public byte[] call()
+                    throws IOException {
+                    throw new FileNotFoundException("nosuch.java");
+                }
+            });
+        for (int i = 2; i < 20; i++) {
+            submit(buffer, _pool, i, 0);
+        }
+        try {
+            // Results before the failure may or may not be taken.
+            while (buffer.take() != null) { }
+            fail();
+        } catch (FileNotFoundException e) {
+            assertEquals("nosuch.java", e.getMessage());
+        }
+    }
+}
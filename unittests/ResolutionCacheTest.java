@@ -0,0 +1,60 @@
+//  ResolutionCacheTest.java
+//
+package getIdents;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  ResolutionCacheTest
+//
+public class ResolutionCacheTest {
+
+    @Test
+    public void testFind() {
+        ResolutionCache cache = new ResolutionCache(1024);
+        assertEquals(-1, cache.find(1, 2));
+        cache.put(1, 2, "Foo");
+        cache.put(1, 3, null);
+        int slot = cache.find(1, 2);
+        assertTrue(0 <= slot);
+        assertEquals("Foo", cache.getValue(slot));
+        // An unresolved name is cached as null.
+        slot = cache.find(1, 3);
+        assertTrue(0 <= slot);
+        assertNull(cache.getValue(slot));
+        assertEquals(-1, cache.find(2, 2));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testDeclare() {
+        ResolutionCache cache = new ResolutionCache(1024);
+        cache.put(1, 2, "Foo");
+        cache.put(1, 3, "Bar");
+        // A declaration invalidates the entries of its name only.
+        cache.declare(2);
+        assertEquals(-1, cache.find(1, 2));
+        assertTrue(0 <= cache.find(1, 3));
+        cache.put(1, 2, "Baz");
+        assertEquals("Baz", cache.getValue(cache.find(1, 2)));
+        cache.declare(-1);
+    }
+
+    @Test
+    public void testReplace() {
+        // Entries that collide replace each other.
+        ResolutionCache cache = new ResolutionCache(16);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i, "T"+i);
+        }
+        int n = 0;
+        for (int i = 0; i < 1000; i++) {
+            int slot = cache.find(i, i);
+            if (0 <= slot) {
+                assertEquals("T"+i, cache.getValue(slot));
+                n++;
+            }
+        }
+        assertTrue(0 < n && n <= 16);
+    }
+}
@@ -0,0 +1,186 @@
+//  SourceReaderTest.java
+//
+package getIdents;
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  SourceReaderTest
+//  Archives are expanded into their .java entries, and a range of
+//  the sources is passed while all of them are counted.
+//
+public class SourceReaderTest {
+
+    private List<File> _files = new ArrayList<File>();
+
+    @After
+    public void tearDown() {
+        for (File file : _files) {
+            file.delete();
+        }
+    }
+
+    private File createFile(String suffix, byte[] data)
+        throws IOException {
+        File file = File.createTempFile("getidents", suffix);
+        _files.add(file);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static byte[] getBytes(String s)
+        throws IOException {
+        return s.getBytes("UTF-8");
+    }
+
+    private static void putString(byte[] header, int start, String s)
+        throws IOException {
+        byte[] b = getBytes(s);
+        System.arraycopy(b, 0, header, start, b.length);
+    }
+
+    // writeEntry: writes a ustar header and its padded data.
+    private static void writeEntry(
+        OutputStream out, String prefix, String name, char type, byte[] data)
+        throws IOException {
+        byte[] header = new byte[512];
+        putString(header, 0, name);
+        putString(header, 100, "0000644");
+        putString(header, 124, String.format("%011o", data.length));
+        header[156] = (byte)type;
+        putString(header, 257, "ustar");
+        putString(header, 263, "00");
+        putString(header, 345, prefix);
+        Arrays.fill(header, 148, 156, (byte)' ');
+        int sum = 0;
+        for (byte b : header) {
+            sum += (b & 0xff);
+        }
+        putString(header, 148, String.format("%06o", sum));
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static byte[] getTar()
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeEntry(out, "", "src/", '5', new byte[0]);
+        writeEntry(out, "", "src/A.java", '0', getBytes("class A {}"));
+        writeEntry(out, "", "src/README", '0', getBytes("not java"));
+        writeEntry(out, "long/prefix", "B.java", '0', getBytes("class B {}"));
+        char[] c = new char[150];
+        Arrays.fill(c, 'c');
+        String longName = new String(c)+"/C.java";
+        writeEntry(out, "", "././@LongLink", 'L', getBytes(longName+"\0"));
+        writeEntry(out, "", "C.java", '0', getBytes("class C {}"));
+        String record = " path=pax/D\u00e9.java\n";
+        record = (getBytes(record).length+3)+record;
+        writeEntry(out, "", "PaxHeader", 'x', getBytes(record));
+        writeEntry(out, "", "D.java", '0', new byte[1000]);
+        out.write(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data)
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(b)) {
+            out.write(data);
+        }
+        return b.toByteArray();
+    }
+
+    private static byte[] getZip()
+        throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(b)) {
+            out.putNextEntry(new ZipEntry("p/"));
+            out.putNextEntry(new ZipEntry("p/E.java"));
+            out.write(getBytes("class E {}"));
+            out.putNextEntry(new ZipEntry("p/E.class"));
+            out.write(new byte[10]);
+        }
+        return b.toByteArray();
+    }
+
+    // read: returns the paths of the sources relative to the archives.
+    private static List<String> read(SourceReader reader)
+        throws IOException {
+        List<String> names = new ArrayList<String>();
+        for (SourceReader.Source src; (src = reader.next()) != null; ) {
+            int i = src.path.indexOf("!/");
+            names.add((i < 0)? src.path : src.path.substring(i+2));
+        }
+        return names;
+    }
+
+    private static final List<String> TAR_NAMES = Arrays.asList(
+        "src/A.java", "long/prefix/B.java",
+        new String(new char[150]).replace('\0', 'c')+"/C.java",
+        "pax/D\u00e9.java");
+
+    @Test
+    public void testTar()
+        throws IOException {
+        File tar = createFile(".tar", getTar());
+        SourceReader reader = new SourceReader(
+            Arrays.asList(tar.getPath()), null, 4);
+        List<String> names = new ArrayList<String>();
+        int size = 0;
+        for (SourceReader.Source src; (src = reader.next()) != null; ) {
+            assertTrue(src.path.startsWith(tar.getPath()+"!/"));
+            names.add(src.path.substring(tar.getPath().length()+2));
+            size += src.data.length;
+        }
+        assertEquals(TAR_NAMES, names);
+        assertEquals(1030, size);
+        assertEquals(4, reader.getCount());
+    }
+
+    @Test
+    public void testArchives()
+        throws IOException {
+        File tgz = createFile(".tgz", gzip(getTar()));
+        File zip = createFile(".zip", getZip());
+        SourceReader reader = new SourceReader(
+            Arrays.asList(zip.getPath(), "F.java", tgz.getPath()), null, 4);
+        List<String> expected = new ArrayList<String>();
+        expected.add("p/E.java");
+        expected.add("F.java");
+        expected.addAll(TAR_NAMES);
+        assertEquals(expected, read(reader));
+        assertEquals(6, reader.getCount());
+    }
+
+    @Test
+    public void testRange()
+        throws IOException {
+        File tar = createFile(".tar", getTar());
+        List<String> paths = Arrays.asList("E.java", tar.getPath(), "F.java");
+        SourceReader reader = new SourceReader(paths, null, 4, 2, 4);
+        assertEquals(TAR_NAMES.subList(1, 3), read(reader));
+        assertEquals(6, reader.getCount());
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncatedHeader()
+        throws IOException {
+        byte[] data = getTar();
+        File tar = createFile(".tar", Arrays.copyOf(data, 3000));
+        read(new SourceReader(Arrays.asList(tar.getPath()), null, 4));
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncatedSkip()
+        throws IOException {
+        // Within the padding of an entry that is not read.
+        byte[] data = getTar();
+        File tar = createFile(".tar", Arrays.copyOf(data, 2300));
+        read(new SourceReader(Arrays.asList(tar.getPath()), null, 4));
+    }
+}
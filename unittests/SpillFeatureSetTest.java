@@ -0,0 +1,92 @@
+//  SpillFeatureSetTest.java
+//
+package getIdents;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+//  SpillFeatureSetTest
+//  A SpillFeatureSet must return the same features in the same order
+//  as a FeatureSet in the heap, however they are spilled and merged.
+//
+public class SpillFeatureSetTest {
+
+    private static final int NFEATS = 400000;
+
+    private SymbolTable _symbols;
+    private FeatureSet _expected;
+    private SpillFeatureSet _actual;
+    private long[] _keys;
+
+    @Before
+    public void setUp() {
+        _symbols = new SymbolTable();
+        _expected = new FeatureSet(_symbols);
+        // The smallest budget: the hot tier is spilled at 1MB.
+        _actual = new SpillFeatureSet(_symbols, 0);
+        Random rnd = new Random(0);
+        int[] names = new int[500];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = _symbols.intern("n"+i);
+        }
+        _keys = new long[20000];
+        for (int i = 0; i < _keys.length; i++) {
+            int scope = _symbols.getScope(-1, _symbols.intern("T"+(i / 10)));
+            _keys[i] = FeatureSet.getKey("vfm".charAt(i % 3), scope, names[i % 500]);
+        }
+        for (int i = 0; i < NFEATS; i++) {
+            long k = _keys[rnd.nextInt(_keys.length)];
+            char kind = (rnd.nextBoolean())? FeatureSet.TYPE : FeatureSet.VAR;
+            int name = names[rnd.nextInt(names.length)];
+            _expected.add(k, kind, name);
+            _actual.add(k, kind, name);
+        }
+    }
+
+    private static List<String> getFeats(FeatureSet fset, long k) {
+        List<String> feats = new ArrayList<String>();
+        for (int i = fset.first(k); 0 <= i; i = fset.next(i)) {
+            feats.add(fset.getFeatKind(i)+":"+fset.getFeatName(i));
+        }
+        return feats;
+    }
+
+    @Test
+    public void testSpilled() {
+        assertTrue(1 < _actual.getRunCount());
+        // Runs are merged as a binary counter.
+        assertTrue(_actual.getRunCount() <= 4);
+        assertEquals(NFEATS, _actual.getFeatCount());
+    }
+
+    @Test
+    public void testFeatures() {
+        for (long k : _keys) {
+            assertEquals(getFeats(_expected, k), getFeats(_actual, k));
+        }
+    }
+
+    @Test
+    public void testMissing() {
+        int scope = _symbols.getScope(-1, _symbols.intern("Tnone"));
+        assertEquals(-1, _actual.first(FeatureSet.getKey('v', scope, 0)));
+        assertEquals(-1, _actual.first(-1));
+    }
+
+    @Test
+    public void testGetKeys() {
+        long[] keys = _expected.getKeys();
+        Arrays.sort(keys);
+        assertArrayEquals(keys, _actual.getKeys());
+    }
+
+    @Test
+    public void testAddAll() {
+        // Copying goes through first/next of the runs.
+        FeatureSet copy = new FeatureSet(_symbols);
+        copy.addAll(_actual);
+        for (long k : _keys) {
+            assertEquals(getFeats(_expected, k), getFeats(copy, k));
+        }
+    }
+}